@@ -0,0 +1,33 @@
+package ru.hogwarts.school.cache;
+
+import java.nio.ByteBuffer;
+
+public class AvatarPreview {
+    private final String mediaType;
+    private final ByteBuffer data;
+
+    public AvatarPreview(String mediaType, ByteBuffer data) {
+        this.mediaType = mediaType;
+        this.data = data.asReadOnlyBuffer();
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    public int getSize() {
+        return data.remaining();
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarPreview{" +
+                "mediaType='" + mediaType + '\'' +
+                ", size=" + getSize() +
+                '}';
+    }
+}
@@ -0,0 +1,189 @@
+package ru.hogwarts.school.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of avatar previews bounded by the total number of bytes held.
+ * Previews live in direct buffers, so the budget is spent outside the heap.
+ * <p>
+ * Every {@link #invalidate(Long)} bumps a version shared by a stripe of students. A reader
+ * takes {@link #version(Long)} before loading the avatar row and passes it to
+ * {@link #put(Long, Integer, AvatarPreview, long)}, so a preview loaded from a row that was
+ * replaced in the meantime is dropped instead of outliving the invalidation. The cached sizes
+ * of each student are indexed, so an invalidation touches only that student's entries.
+ */
+@Component
+public class AvatarPreviewCache implements MeterBinder {
+    private static final int VERSION_STRIPES = 64;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, AvatarPreview> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Set<Integer>> sizesByStudent = new HashMap<>();
+    private final long[] versions = new long[VERSION_STRIPES];
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public AvatarPreviewCache(@Value("${avatars.preview-cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public AvatarPreview get(Long studentId, Integer size) {
+        AvatarPreview preview;
+        synchronized (this) {
+            preview = entries.get(new Key(studentId, size));
+        }
+        if (preview == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return preview;
+    }
+
+    public synchronized long version(Long studentId) {
+        return versions[stripe(studentId)];
+    }
+
+    public void put(Long studentId, Integer size, AvatarPreview preview) {
+        put(studentId, size, preview, -1);
+    }
+
+    /**
+     * Caches the preview unless the student was invalidated after {@code version} was taken;
+     * a negative version skips the check.
+     */
+    public void put(Long studentId, Integer size, AvatarPreview preview, long version) {
+        if (preview.getSize() > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (version >= 0 && versions[stripe(studentId)] != version) {
+                return;
+            }
+            AvatarPreview previous = entries.put(new Key(studentId, size), preview);
+            if (previous != null) {
+                currentBytes -= previous.getSize();
+            } else {
+                sizesByStudent.computeIfAbsent(studentId, id -> new HashSet<>()).add(size);
+            }
+            currentBytes += preview.getSize();
+
+            Iterator<Map.Entry<Key, AvatarPreview>> iterator = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<Key, AvatarPreview> eldest = iterator.next();
+                iterator.remove();
+                unindex(eldest.getKey());
+                currentBytes -= eldest.getValue().getSize();
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized void invalidate(Long studentId) {
+        versions[stripe(studentId)]++;
+        Set<Integer> sizes = sizesByStudent.remove(studentId);
+        if (sizes == null) {
+            return;
+        }
+        for (Integer size : sizes) {
+            AvatarPreview removed = entries.remove(new Key(studentId, size));
+            if (removed != null) {
+                currentBytes -= removed.getSize();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < versions.length; i++) {
+            versions[i]++;
+        }
+        entries.clear();
+        sizesByStudent.clear();
+        currentBytes = 0;
+    }
+
+    private void unindex(Key key) {
+        Set<Integer> sizes = sizesByStudent.get(key.studentId);
+        if (sizes != null && sizes.remove(key.size) && sizes.isEmpty()) {
+            sizesByStudent.remove(key.studentId);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("avatar.preview.cache.gets", this, AvatarPreviewCache::getHitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("avatar.preview.cache.gets", this, AvatarPreviewCache::getMissCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("avatar.preview.cache.evictions", this, AvatarPreviewCache::getEvictionCount)
+                .register(registry);
+        Gauge.builder("avatar.preview.cache.size", this, AvatarPreviewCache::getEntryCount)
+                .register(registry);
+        Gauge.builder("avatar.preview.cache.bytes", this, AvatarPreviewCache::getCurrentBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("avatar.preview.cache.max.bytes", this, cache -> cache.maxBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static int stripe(Long studentId) {
+        return Math.floorMod(studentId.hashCode(), VERSION_STRIPES);
+    }
+
+    private static final class Key {
+        private final Long studentId;
+        private final Integer size;
+
+        private Key(Long studentId, Integer size) {
+            this.studentId = studentId;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(studentId, key.studentId) && Objects.equals(size, key.size);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(studentId, size);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.hogwarts.school.cache;
+
+import org.hibernate.Cache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hogwarts.school.model.Faculty;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Second-level cache entries of {@code Faculty.students}. The collection is the inverse side,
+ * so Hibernate does not refresh it when a membership is set on the student alone; writers
+ * doing that evict the faculties involved here once their transaction commits.
+ */
+@Component
+public class FacultyStudentsCache {
+    private static final String ROLE = Faculty.class.getName() + ".students";
+
+    private final Cache cache;
+
+    public FacultyStudentsCache(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.getCache().unwrap(Cache.class);
+    }
+
+    public void evictAfterCommit(Collection<Long> facultyIds) {
+        Set<Long> ids = facultyIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(ids);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(ids);
+            }
+        });
+    }
+
+    private void evict(Set<Long> facultyIds) {
+        facultyIds.forEach(id -> cache.evictCollectionData(ROLE, id));
+    }
+}
@@ -0,0 +1,49 @@
+package ru.hogwarts.school.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+    private final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+    @Lazy
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor avatarThumbnailExecutor(
+            @Value("${avatars.thumbnails.pool-size:2}") int poolSize,
+            @Value("${avatars.thumbnails.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("avatar-thumbnail-");
+        executor.setRejectedExecutionHandler((task, pool) ->
+                logger.warn("Thumbnail queue is full, task is dropped"));
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor changeFeedExecutor(
+            @Value("${changes.pool-size:2}") int poolSize,
+            @Value("${changes.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("change-feed-");
+        return executor;
+    }
+}
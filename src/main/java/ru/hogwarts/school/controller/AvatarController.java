@@ -1,28 +1,37 @@
 package ru.hogwarts.school.controller;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import ru.hogwarts.school.dto.AvatarImportResultDTO;
 import ru.hogwarts.school.dto.AvatarNotDetailDTO;
+import ru.hogwarts.school.dto.CursorPageDTO;
+import ru.hogwarts.school.service.AvatarImportService;
 import ru.hogwarts.school.service.AvatarService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 
 @RestController
 @RequestMapping("avatar")
 public class AvatarController {
     private final AvatarService avatarService;
+    private final AvatarImportService avatarImportService;
 
-    public AvatarController(AvatarService avatarService) {
+    public AvatarController(AvatarService avatarService, AvatarImportService avatarImportService) {
         this.avatarService = avatarService;
+        this.avatarImportService = avatarImportService;
     }
 
     @GetMapping
-    public ResponseEntity<Collection<AvatarNotDetailDTO>> findAllByPage(
-            @RequestParam(value = "page") Integer page,
-            @RequestParam(value = "page-size") Integer pageSize) {
-        return ResponseEntity.ok(avatarService.findAllByPage(page - 1, pageSize));
+    public ResponseEntity<CursorPageDTO<AvatarNotDetailDTO>> findAllByPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(avatarService.findAllByPage(cursor, limit));
+    }
+
+    @PostMapping(value = "import", consumes = "application/zip")
+    public ResponseEntity<Collection<AvatarImportResultDTO>> importAvatars(InputStream archive) throws IOException {
+        return ResponseEntity.ok(avatarImportService.importAvatars(archive));
     }
 }
@@ -3,14 +3,13 @@ package ru.hogwarts.school.controller;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.hogwarts.school.dto.CursorPageDTO;
 import ru.hogwarts.school.dto.FacultyCreateDTO;
 import ru.hogwarts.school.dto.FacultyDetailDTO;
 import ru.hogwarts.school.dto.FacultyNotDetailDTO;
 import ru.hogwarts.school.dto.StudentDetailDTO;
 import ru.hogwarts.school.service.FacultyService;
 
-import java.util.Collection;
-
 @RestController
 @RequestMapping("faculty")
 public class FacultyController {
@@ -21,17 +20,19 @@ public class FacultyController {
     }
 
     @GetMapping
-    public ResponseEntity<Collection<FacultyNotDetailDTO>> getAllFaculties(
+    public ResponseEntity<CursorPageDTO<FacultyNotDetailDTO>> getAllFaculties(
             @RequestParam(value = "color", required = false) String color,
-            @RequestParam(value = "name", required = false) String name
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit
     ) {
         if (color != null && !color.isBlank()) {
-            return ResponseEntity.ok(facultyService.getFacultiesByColor(color));
+            return ResponseEntity.ok(facultyService.getFacultiesByColor(color, cursor, limit));
         }
         if (name != null && !name.isBlank()) {
-            return ResponseEntity.ok(facultyService.getFacultiesByName(name));
+            return ResponseEntity.ok(facultyService.getFacultiesByName(name, cursor, limit));
         }
-        return ResponseEntity.ok(facultyService.getAllFaculties());
+        return ResponseEntity.ok(facultyService.getAllFaculties(cursor, limit));
     }
 
     @GetMapping("{id}")
@@ -55,8 +56,10 @@ public class FacultyController {
     }
 
     @GetMapping("{id}/students")
-    public ResponseEntity<Collection<StudentDetailDTO>> getFacultyStudents(@PathVariable Long id) {
-        return ResponseEntity.ok(facultyService.getFacultyStudentsById(id));
+    public ResponseEntity<CursorPageDTO<StudentDetailDTO>> getFacultyStudents(@PathVariable Long id,
+                                                                             @RequestParam(value = "cursor", required = false) String cursor,
+                                                                             @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(facultyService.getFacultyStudentsById(id, cursor, limit));
     }
 
     @GetMapping("longest-name")
@@ -1,42 +1,67 @@
 package ru.hogwarts.school.controller;
 
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.cache.AvatarPreview;
+import ru.hogwarts.school.dto.AgeStatsDTO;
+import ru.hogwarts.school.dto.CursorPageDTO;
 import ru.hogwarts.school.dto.FacultyDetailDTO;
+import ru.hogwarts.school.dto.StudentBulkResultDTO;
 import ru.hogwarts.school.dto.StudentCreateDTO;
 import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.dto.StudentMatchDTO;
 import ru.hogwarts.school.exception.BadDataException;
-import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repository.projection.AvatarMetadata;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.StudentBulkService;
 import ru.hogwarts.school.service.StudentService;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("student")
 public class StudentController {
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     private final StudentService studentService;
     private final AvatarService avatarService;
+    private final StudentBulkService studentBulkService;
 
-    public StudentController(StudentService studentService, AvatarService avatarService) {
+    public StudentController(StudentService studentService, AvatarService avatarService, StudentBulkService studentBulkService) {
         this.studentService = studentService;
         this.avatarService = avatarService;
+        this.studentBulkService = studentBulkService;
     }
 
     @GetMapping
-    public ResponseEntity<Collection<StudentDetailDTO>> findAllStudents(@RequestParam(value = "age", required = false) Integer age, @RequestParam(value = "min-age", required = false) Integer minAge, @RequestParam(value = "max-age", required = false) Integer maxAge) {
+    public ResponseEntity<CursorPageDTO<StudentDetailDTO>> findAllStudents(@RequestParam(value = "age", required = false) Integer age,
+                                                                           @RequestParam(value = "min-age", required = false) Integer minAge,
+                                                                           @RequestParam(value = "max-age", required = false) Integer maxAge,
+                                                                           @RequestParam(value = "cursor", required = false) String cursor,
+                                                                           @RequestParam(value = "limit", required = false) Integer limit) {
         if (age != null) {
-            return ResponseEntity.ok(studentService.getStudentsByAge(age));
+            return ResponseEntity.ok(studentService.getStudentsByAge(age, cursor, limit));
         }
         if (minAge != null || maxAge != null) {
             if (minAge == null) {
@@ -45,9 +70,26 @@ public class StudentController {
             if (maxAge == null) {
                 throw new BadDataException("max-age is required");
             }
-            return ResponseEntity.ok(studentService.getStudentsBetweenAge(minAge, maxAge));
+            return ResponseEntity.ok(studentService.getStudentsBetweenAge(minAge, maxAge, cursor, limit));
         }
-        return ResponseEntity.ok(studentService.getAllStudents());
+        return ResponseEntity.ok(studentService.getAllStudents(cursor, limit));
+    }
+
+    @GetMapping(value = "export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportStudents() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(studentService::exportStudents);
+    }
+
+    @PostMapping("bulk")
+    public ResponseEntity<List<StudentBulkResultDTO>> createStudents(@RequestBody List<StudentCreateDTO> students) {
+        return ResponseEntity.ok(studentBulkService.createStudents(students));
+    }
+
+    @PutMapping("bulk")
+    public ResponseEntity<List<StudentBulkResultDTO>> updateStudents(@RequestBody List<StudentDetailDTO> students) {
+        return ResponseEntity.ok(studentBulkService.updateStudents(students));
     }
 
     @GetMapping("{id}")
@@ -80,6 +122,24 @@ public class StudentController {
         return ResponseEntity.ok(studentService.getStudentAvgAge());
     }
 
+    @GetMapping("search")
+    public ResponseEntity<List<StudentDetailDTO>> searchStudents(@RequestParam("prefix") String prefix,
+                                                                 @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(studentService.searchStudentsByName(prefix, limit));
+    }
+
+    @GetMapping("search/fuzzy")
+    public ResponseEntity<List<StudentMatchDTO>> searchStudentsFuzzy(@RequestParam("query") String query,
+                                                                     @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(studentService.searchStudentsBySimilarName(query, limit));
+    }
+
+    @GetMapping("age-stats")
+    public ResponseEntity<AgeStatsDTO> getAgeStats(@RequestParam(value = "faculty", required = false) Long faculty,
+                                                   @RequestParam(value = "bucket", defaultValue = "1") Integer bucket) {
+        return ResponseEntity.ok(studentService.getAgeStats(faculty, bucket));
+    }
+
     @GetMapping("last")
     public ResponseEntity<Collection<StudentDetailDTO>> getLastStudents() {
         return ResponseEntity.ok(studentService.getLastStudents());
@@ -101,28 +161,122 @@ public class StudentController {
     }
 
     @GetMapping(value = "/{id}/avatar/preview")
-    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id) {
-        Avatar avatar = avatarService.findAvatar(id);
+    public void downloadAvatarPreview(@PathVariable Long id,
+                                      @RequestParam(value = "size", required = false) Integer size,
+                                      HttpServletResponse response) throws IOException {
+        AvatarPreview preview = avatarService.getAvatarPreview(id, size);
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-        headers.setContentLength(avatar.getData().length);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(preview.getMediaType());
+        response.setContentLength(preview.getSize());
 
-        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(avatar.getData());
+        writeBuffer(response, preview.getData());
     }
 
     @GetMapping(value = "/{id}/avatar")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
-        Avatar avatar = avatarService.findAvatar(id);
+    public void downloadAvatar(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AvatarMetadata avatar = avatarService.findAvatarMetadata(id);
 
         Path path = Path.of(avatar.getFilePath());
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        String eTag = "\"" + (avatar.getFileHash() != null
+                ? avatar.getFileHash()
+                : avatar.getId() + "-" + avatar.getFileSize() + "-" + lastModified) + "\"";
+
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+
+        long fileSize = avatar.getFileSize();
+        long start = 0;
+        long end = fileSize - 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && isRangeApplicable(request, eTag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                sendRangeNotSatisfiable(response, fileSize);
+                return;
+            }
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.get(0).getRangeStart(fileSize);
+                    end = ranges.get(0).getRangeEnd(fileSize);
+                } catch (IllegalArgumentException e) {
+                    sendRangeNotSatisfiable(response, fileSize);
+                    return;
+                }
+                if (start >= fileSize || end < start) {
+                    sendRangeNotSatisfiable(response, fileSize);
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileSize);
+            }
+        }
+
+        response.setContentType(avatar.getMediaType());
+        response.setContentLengthLong(end - start + 1);
+
+        ByteBuffer mapped = avatarService.getMappedContent(avatar);
+        if (mapped != null) {
+            writeBuffer(response, mapped.position(Math.toIntExact(start)).limit(Math.toIntExact(end + 1)));
+            return;
+        }
+        sendFile(request, response, path, AvatarService.getFileOffset(avatar) + start, end - start + 1);
+    }
 
-        try (InputStream is = Files.newInputStream(path);
-             OutputStream os = response.getOutputStream()) {
-            response.setStatus(200);
-            response.setContentType(avatar.getMediaType());
-            response.setContentLength(avatar.getFileSize().intValue());
-            is.transferTo(os);
+    private void sendRangeNotSatisfiable(HttpServletResponse response, long fileSize) throws IOException {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+        response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+    }
+
+    private void writeBuffer(HttpServletResponse response, ByteBuffer data) throws IOException {
+        try (WritableByteChannel out = Channels.newChannel(response.getOutputStream())) {
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+        }
+    }
+
+    private boolean isRangeApplicable(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            return lastModified / 1000 <= request.getDateHeader(HttpHeaders.IF_RANGE) / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void sendFile(HttpServletRequest request, HttpServletResponse response, Path path, long start, long length) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + length);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             WritableByteChannel out = Channels.newChannel(response.getOutputStream())) {
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
         }
     }
 
@@ -0,0 +1,71 @@
+package ru.hogwarts.school.datasource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+
+/**
+ * Keeps sessions of replica-routed transactions from writing to the second-level and query caches.
+ * Those caches are shared with primary sessions and kept current by their commits, so a row read
+ * from a lagging replica must not be put there. The session still reads from the caches: what
+ * they hold is never older than the primary, so a hit is as good as a sticky read.
+ */
+public class ReplicaCacheModeJpaDialect extends HibernateJpaDialect {
+    private static final String STORE_MODE = "javax.persistence.cache.storeMode";
+
+    private final ReplicaStickiness stickiness;
+
+    public ReplicaCacheModeJpaDialect(ReplicaStickiness stickiness) {
+        this.stickiness = stickiness;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly() || stickiness.isSticky()) {
+            return transactionData;
+        }
+        // find() derives the cache mode from this property on every call, so the session mode alone is not enough
+        Object previousStoreMode = entityManager.getProperties().get(STORE_MODE);
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previousCacheMode = session.getCacheMode();
+        entityManager.setProperty(STORE_MODE, CacheStoreMode.BYPASS);
+        session.setCacheMode(CacheMode.GET);
+        return new ReplicaTransactionData(transactionData, entityManager, previousStoreMode, previousCacheMode);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaTransactionData) {
+            ReplicaTransactionData replicaData = (ReplicaTransactionData) transactionData;
+            if (replicaData.entityManager.isOpen()) {
+                replicaData.entityManager.setProperty(STORE_MODE,
+                        replicaData.previousStoreMode != null ? replicaData.previousStoreMode : CacheStoreMode.USE);
+                replicaData.entityManager.unwrap(Session.class).setCacheMode(replicaData.previousCacheMode);
+            }
+            transactionData = replicaData.transactionData;
+        }
+        super.cleanupTransaction(transactionData);
+    }
+
+    private static final class ReplicaTransactionData {
+        private final Object transactionData;
+        private final EntityManager entityManager;
+        private final Object previousStoreMode;
+        private final CacheMode previousCacheMode;
+
+        private ReplicaTransactionData(Object transactionData, EntityManager entityManager, Object previousStoreMode, CacheMode previousCacheMode) {
+            this.transactionData = transactionData;
+            this.entityManager = entityManager;
+            this.previousStoreMode = previousStoreMode;
+            this.previousCacheMode = previousCacheMode;
+        }
+    }
+}
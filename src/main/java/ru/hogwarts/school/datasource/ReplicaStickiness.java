@@ -0,0 +1,60 @@
+package ru.hogwarts.school.datasource;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Read-your-writes for replica routing. A write pins the current thread to the primary for
+ * {@code datasource.replica.sticky-window-ms} and hands the client a cookie with the same deadline,
+ * which {@link ru.hogwarts.school.filter.ReplicaStickinessFilter} restores on its next requests.
+ */
+public class ReplicaStickiness {
+    public static final String COOKIE = "primary-until";
+
+    private static final String COOKIE_SENT = ReplicaStickiness.class.getName() + ".COOKIE_SENT";
+
+    private final ThreadLocal<Long> stickyUntil = new ThreadLocal<>();
+    private final long windowMs;
+
+    public ReplicaStickiness(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public boolean isSticky() {
+        Long until = stickyUntil.get();
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    public void onWrite() {
+        long until = System.currentTimeMillis() + windowMs;
+        stickyUntil.set(until);
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return;
+        }
+        HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+        if (response == null || response.isCommitted()
+                || attributes.getAttribute(COOKIE_SENT, RequestAttributes.SCOPE_REQUEST) != null) {
+            return;
+        }
+        Cookie cookie = new Cookie(COOKIE, String.valueOf(until));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (windowMs + 999) / 1000));
+        response.addCookie(cookie);
+        attributes.setAttribute(COOKIE_SENT, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    public void stickUntil(long until) {
+        stickyUntil.set(until);
+    }
+
+    public void clear() {
+        stickyUntil.remove();
+    }
+}
@@ -0,0 +1,139 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Map;
+import java.util.Objects;
+
+public class AgeStatsDTO {
+    private Long faculty;
+    private Long students;
+    private Double avgAge;
+    private Integer minAge;
+    private Integer maxAge;
+    private Integer p50;
+    private Integer p90;
+    private Integer p99;
+    private Integer bucket;
+    private Map<Integer, Long> histogram;
+
+    public AgeStatsDTO(Long faculty, Long students, Double avgAge, Integer minAge, Integer maxAge, Integer p50, Integer p90, Integer p99, Integer bucket, Map<Integer, Long> histogram) {
+        this.faculty = faculty;
+        this.students = students;
+        this.avgAge = avgAge;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.bucket = bucket;
+        this.histogram = histogram;
+    }
+
+    public Long getFaculty() {
+        return faculty;
+    }
+
+    public void setFaculty(Long faculty) {
+        this.faculty = faculty;
+    }
+
+    public Long getStudents() {
+        return students;
+    }
+
+    public void setStudents(Long students) {
+        this.students = students;
+    }
+
+    public Double getAvgAge() {
+        return avgAge;
+    }
+
+    public void setAvgAge(Double avgAge) {
+        this.avgAge = avgAge;
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public void setMinAge(Integer minAge) {
+        this.minAge = minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Integer maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public Integer getP50() {
+        return p50;
+    }
+
+    public void setP50(Integer p50) {
+        this.p50 = p50;
+    }
+
+    public Integer getP90() {
+        return p90;
+    }
+
+    public void setP90(Integer p90) {
+        this.p90 = p90;
+    }
+
+    public Integer getP99() {
+        return p99;
+    }
+
+    public void setP99(Integer p99) {
+        this.p99 = p99;
+    }
+
+    public Integer getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(Integer bucket) {
+        this.bucket = bucket;
+    }
+
+    public Map<Integer, Long> getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(Map<Integer, Long> histogram) {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AgeStatsDTO that = (AgeStatsDTO) o;
+        return Objects.equals(faculty, that.faculty) && Objects.equals(students, that.students) && Objects.equals(avgAge, that.avgAge) && Objects.equals(minAge, that.minAge) && Objects.equals(maxAge, that.maxAge) && Objects.equals(p50, that.p50) && Objects.equals(p90, that.p90) && Objects.equals(p99, that.p99) && Objects.equals(bucket, that.bucket) && Objects.equals(histogram, that.histogram);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(faculty, students, avgAge, minAge, maxAge, p50, p90, p99, bucket, histogram);
+    }
+
+    @Override
+    public String toString() {
+        return "AgeStatsDTO{" +
+                "faculty=" + faculty +
+                ", students=" + students +
+                ", avgAge=" + avgAge +
+                ", minAge=" + minAge +
+                ", maxAge=" + maxAge +
+                ", p50=" + p50 +
+                ", p90=" + p90 +
+                ", p99=" + p99 +
+                ", bucket=" + bucket +
+                ", histogram=" + histogram +
+                '}';
+    }
+}
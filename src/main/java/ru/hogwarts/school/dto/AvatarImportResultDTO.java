@@ -0,0 +1,65 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Objects;
+
+public class AvatarImportResultDTO {
+    public enum Status {
+        IMPORTED, INVALID_NAME, DUPLICATE, TOO_BIG, STUDENT_NOT_FOUND, FAILED
+    }
+
+    private String entryName;
+    private Long studentId;
+    private Status status;
+
+    public AvatarImportResultDTO(String entryName, Long studentId, Status status) {
+        this.entryName = entryName;
+        this.studentId = studentId;
+        this.status = status;
+    }
+
+    public String getEntryName() {
+        return entryName;
+    }
+
+    public void setEntryName(String entryName) {
+        this.entryName = entryName;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(Long studentId) {
+        this.studentId = studentId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarImportResultDTO that = (AvatarImportResultDTO) o;
+        return Objects.equals(entryName, that.entryName) && Objects.equals(studentId, that.studentId) && status == that.status;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entryName, studentId, status);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarImportResultDTO{" +
+                "entryName='" + entryName + '\'' +
+                ", studentId=" + studentId +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -0,0 +1,76 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Objects;
+
+public class ChangeDTO {
+    public enum Action {
+        CREATED, UPDATED, DELETED
+    }
+
+    private String entity;
+    private Action action;
+    private Long id;
+    private Object data;
+
+    public ChangeDTO(String entity, Action action, Long id, Object data) {
+        this.entity = entity;
+        this.action = action;
+        this.id = id;
+        this.data = data;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    public void setData(Object data) {
+        this.data = data;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ChangeDTO changeDTO = (ChangeDTO) o;
+        return Objects.equals(entity, changeDTO.entity) && action == changeDTO.action && Objects.equals(id, changeDTO.id) && Objects.equals(data, changeDTO.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entity, action, id, data);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeDTO{" +
+                "entity='" + entity + '\'' +
+                ", action=" + action +
+                ", id=" + id +
+                ", data=" + data +
+                '}';
+    }
+}
@@ -0,0 +1,51 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+public class CursorPageDTO<T> {
+    private List<T> items;
+    private String next;
+
+    public CursorPageDTO(List<T> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CursorPageDTO<?> that = (CursorPageDTO<?>) o;
+        return Objects.equals(items, that.items) && Objects.equals(next, that.next);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(items, next);
+    }
+
+    @Override
+    public String toString() {
+        return "CursorPageDTO{" +
+                "items=" + items +
+                ", next='" + next + '\'' +
+                '}';
+    }
+}
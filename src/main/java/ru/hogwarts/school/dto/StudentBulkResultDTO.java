@@ -0,0 +1,65 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Objects;
+
+public class StudentBulkResultDTO {
+    public enum Status {
+        CREATED, UPDATED, STUDENT_NOT_FOUND, FACULTY_NOT_FOUND, INVALID
+    }
+
+    private Integer index;
+    private Status status;
+    private StudentDetailDTO student;
+
+    public StudentBulkResultDTO(Integer index, Status status, StudentDetailDTO student) {
+        this.index = index;
+        this.status = status;
+        this.student = student;
+    }
+
+    public Integer getIndex() {
+        return index;
+    }
+
+    public void setIndex(Integer index) {
+        this.index = index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public StudentDetailDTO getStudent() {
+        return student;
+    }
+
+    public void setStudent(StudentDetailDTO student) {
+        this.student = student;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentBulkResultDTO that = (StudentBulkResultDTO) o;
+        return Objects.equals(index, that.index) && status == that.status && Objects.equals(student, that.student);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, status, student);
+    }
+
+    @Override
+    public String toString() {
+        return "StudentBulkResultDTO{" +
+                "index=" + index +
+                ", status=" + status +
+                ", student=" + student +
+                '}';
+    }
+}
@@ -0,0 +1,83 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Objects;
+
+public class StudentMatchDTO {
+    private Long id;
+    private String name;
+    private Integer age;
+    private Long faculty;
+    private Double score;
+
+    public StudentMatchDTO(Long id, String name, Integer age, Long faculty, Double score) {
+        this.id = id;
+        this.name = name;
+        this.age = age;
+        this.faculty = faculty;
+        this.score = score;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public void setAge(Integer age) {
+        this.age = age;
+    }
+
+    public Long getFaculty() {
+        return faculty;
+    }
+
+    public void setFaculty(Long faculty) {
+        this.faculty = faculty;
+    }
+
+    public Double getScore() {
+        return score;
+    }
+
+    public void setScore(Double score) {
+        this.score = score;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentMatchDTO that = (StudentMatchDTO) o;
+        return Objects.equals(id, that.id) && Objects.equals(name, that.name) && Objects.equals(age, that.age) && Objects.equals(faculty, that.faculty) && Objects.equals(score, that.score);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, age, faculty, score);
+    }
+
+    @Override
+    public String toString() {
+        return "StudentMatchDTO{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                ", age=" + age +
+                ", faculty=" + faculty +
+                ", score=" + score +
+                '}';
+    }
+}
@@ -2,11 +2,11 @@ package ru.hogwarts.school.dto.mapper;
 
 import org.springframework.stereotype.Service;
 import ru.hogwarts.school.dto.AvatarNotDetailDTO;
-import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repository.projection.AvatarMetadata;
 
 @Service
 public class AvatarDTOMapper {
-    public AvatarNotDetailDTO toNotDetail(Avatar avatar) {
+    public AvatarNotDetailDTO toNotDetail(AvatarMetadata avatar) {
         return new AvatarNotDetailDTO(
                 avatar.getFilePath(),
                 avatar.getFileSize(),
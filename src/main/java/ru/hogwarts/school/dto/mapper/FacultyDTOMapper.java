@@ -4,24 +4,17 @@ import org.springframework.stereotype.Service;
 import ru.hogwarts.school.dto.FacultyDetailDTO;
 import ru.hogwarts.school.dto.FacultyNotDetailDTO;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
 
-import java.util.Collections;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 public class FacultyDTOMapper {
-    public FacultyDetailDTO toDetailDTO(Faculty faculty) {
-        Set<Student> students = faculty.getStudents();
+    public FacultyDetailDTO toDetailDTO(Faculty faculty, Set<Long> students) {
         return new FacultyDetailDTO(
                 faculty.getId(),
                 faculty.getName(),
                 faculty.getColor(),
-                students == null ? Collections.emptySet() : students
-                        .stream()
-                        .map(Student::getId)
-                        .collect(Collectors.toSet())
+                students
         );
     }
 
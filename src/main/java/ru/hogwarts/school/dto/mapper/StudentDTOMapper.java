@@ -2,8 +2,10 @@ package ru.hogwarts.school.dto.mapper;
 
 import org.springframework.stereotype.Service;
 import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.dto.StudentMatchDTO;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.projection.StudentMatch;
 
 @Service
 public class StudentDTOMapper {
@@ -16,4 +18,14 @@ public class StudentDTOMapper {
                 (faculty != null) ? faculty.getId() : null
         );
     }
+
+    public StudentMatchDTO toMatchDTO(StudentMatch match) {
+        return new StudentMatchDTO(
+                match.getId(),
+                match.getName(),
+                match.getAge(),
+                match.getFaculty(),
+                match.getScore()
+        );
+    }
 }
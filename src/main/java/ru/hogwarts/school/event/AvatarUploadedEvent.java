@@ -0,0 +1,70 @@
+package ru.hogwarts.school.event;
+
+import java.util.Objects;
+
+public class AvatarUploadedEvent {
+    private final Long studentId;
+    private final String filePath;
+    private final Long fileOffset;
+    private final Long fileSize;
+    private final String fileHash;
+    private final String mediaType;
+
+    public AvatarUploadedEvent(Long studentId, String filePath, Long fileOffset, Long fileSize, String fileHash, String mediaType) {
+        this.studentId = studentId;
+        this.filePath = filePath;
+        this.fileOffset = fileOffset;
+        this.fileSize = fileSize;
+        this.fileHash = fileHash;
+        this.mediaType = mediaType;
+    }
+
+    public Long getStudentId() {
+        return studentId;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public Long getFileOffset() {
+        return fileOffset;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarUploadedEvent that = (AvatarUploadedEvent) o;
+        return Objects.equals(studentId, that.studentId) && Objects.equals(filePath, that.filePath) && Objects.equals(fileOffset, that.fileOffset) && Objects.equals(fileSize, that.fileSize) && Objects.equals(fileHash, that.fileHash) && Objects.equals(mediaType, that.mediaType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(studentId, filePath, fileOffset, fileSize, fileHash, mediaType);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarUploadedEvent{" +
+                "studentId=" + studentId +
+                ", filePath='" + filePath + '\'' +
+                ", fileOffset=" + fileOffset +
+                ", fileSize=" + fileSize +
+                ", fileHash='" + fileHash + '\'' +
+                ", mediaType='" + mediaType + '\'' +
+                '}';
+    }
+}
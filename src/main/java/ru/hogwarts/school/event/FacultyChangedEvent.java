@@ -0,0 +1,50 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.dto.FacultyNotDetailDTO;
+
+import java.util.Objects;
+
+/**
+ * Published after a faculty is written. {@code before} is {@code null} for a created
+ * faculty, {@code after} is {@code null} for a removed one. Membership changes are
+ * published as {@link StudentChangedEvent}s of the students moved, except on removal:
+ * the members left without a faculty are implied by the removal event itself.
+ */
+public class FacultyChangedEvent {
+    private final FacultyNotDetailDTO before;
+    private final FacultyNotDetailDTO after;
+
+    public FacultyChangedEvent(FacultyNotDetailDTO before, FacultyNotDetailDTO after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    public FacultyNotDetailDTO getBefore() {
+        return before;
+    }
+
+    public FacultyNotDetailDTO getAfter() {
+        return after;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FacultyChangedEvent that = (FacultyChangedEvent) o;
+        return Objects.equals(before, that.before) && Objects.equals(after, that.after);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(before, after);
+    }
+
+    @Override
+    public String toString() {
+        return "FacultyChangedEvent{" +
+                "before=" + before +
+                ", after=" + after +
+                '}';
+    }
+}
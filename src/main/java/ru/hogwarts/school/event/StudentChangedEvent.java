@@ -0,0 +1,48 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.dto.StudentDetailDTO;
+
+import java.util.Objects;
+
+/**
+ * Published after a student is written. {@code before} is {@code null} for a created
+ * student, {@code after} is {@code null} for a removed one.
+ */
+public class StudentChangedEvent {
+    private final StudentDetailDTO before;
+    private final StudentDetailDTO after;
+
+    public StudentChangedEvent(StudentDetailDTO before, StudentDetailDTO after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    public StudentDetailDTO getBefore() {
+        return before;
+    }
+
+    public StudentDetailDTO getAfter() {
+        return after;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentChangedEvent that = (StudentChangedEvent) o;
+        return Objects.equals(before, that.before) && Objects.equals(after, that.after);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(before, after);
+    }
+
+    @Override
+    public String toString() {
+        return "StudentChangedEvent{" +
+                "before=" + before +
+                ", after=" + after +
+                '}';
+    }
+}
@@ -0,0 +1,276 @@
+package ru.hogwarts.school.feed;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.hogwarts.school.dto.ChangeDTO;
+import ru.hogwarts.school.dto.ChangeDTO.Action;
+import ru.hogwarts.school.dto.FacultyNotDetailDTO;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the last {@code changes.buffer-size} student and faculty changes in a ring buffer and
+ * streams them to server-sent event subscribers. Event ids are {@code <epoch>-<sequence>}, so a
+ * client reconnecting with {@code Last-Event-ID} gets exactly the changes it missed. A client that
+ * fell out of the buffer, or whose id is from an earlier run, gets a {@code reset} event and should
+ * reload its data. Subscribers are written on {@code changeFeedExecutor}, never on the writer's thread.
+ * <p>
+ * A drain sends at most {@code changes.drain-budget} events and then yields the thread to the
+ * other subscribers. A subscriber whose drain takes longer than {@code changes.send-timeout-ms}
+ * is dropped, so a slow reader cannot starve the pool; it reconnects with its last event id and
+ * resumes from the buffer. A single write stuck on a dead socket is bounded by the container's
+ * write timeout.
+ */
+@Component
+public class ChangeFeed implements MeterBinder {
+    public static final String STUDENT = "student";
+    public static final String FACULTY = "faculty";
+
+    private final Logger logger = LoggerFactory.getLogger(ChangeFeed.class);
+    private final TaskExecutor executor;
+    private final long emitterTimeoutMs;
+    private final long sendTimeoutMs;
+    private final int drainBudget;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final LongAdder resets = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+
+    // guarded by this
+    private final Entry[] buffer;
+    private long nextSequence = 1;
+
+    public ChangeFeed(@Qualifier("changeFeedExecutor") TaskExecutor executor,
+                      @Value("${changes.buffer-size:4096}") int bufferSize,
+                      @Value("${changes.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                      @Value("${changes.send-timeout-ms:5000}") long sendTimeoutMs,
+                      @Value("${changes.drain-budget:100}") int drainBudget) {
+        this.executor = executor;
+        this.buffer = new Entry[bufferSize];
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.drainBudget = drainBudget;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        StudentDetailDTO before = event.getBefore();
+        StudentDetailDTO after = event.getAfter();
+        append(new ChangeDTO(STUDENT, getAction(before, after), after != null ? after.getId() : before.getId(), after));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        FacultyNotDetailDTO before = event.getBefore();
+        FacultyNotDetailDTO after = event.getAfter();
+        append(new ChangeDTO(FACULTY, getAction(before, after), after != null ? after.getId() : before.getId(), after));
+    }
+
+    public void append(ChangeDTO change) {
+        synchronized (this) {
+            buffer[(int) (nextSequence % buffer.length)] = new Entry(nextSequence, change);
+            nextSequence++;
+        }
+        subscribers.forEach(this::schedule);
+    }
+
+    /**
+     * Opens a stream that starts after {@code lastEventId}, or with the next change when it is {@code null}.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber;
+        synchronized (this) {
+            long last = nextSequence - 1;
+            Long resumeFrom = lastEventId != null ? parseSequence(lastEventId) : Long.valueOf(last);
+            if (resumeFrom == null || resumeFrom < getOldestSequence() - 1 || resumeFrom > last) {
+                subscriber = new Subscriber(emitter, last, true);
+            } else {
+                subscriber = new Subscriber(emitter, resumeFrom, false);
+            }
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        schedule(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Sends a comment to idle subscribers, so proxies keep the connection open and dead clients are noticed.
+     */
+    @Scheduled(fixedDelayString = "${changes.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeat = true;
+            schedule(subscriber);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> drain(subscriber));
+        } catch (TaskRejectedException e) {
+            // picked up again by the next change or heartbeat
+            subscriber.scheduled.set(false);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        long started = System.currentTimeMillis();
+        try {
+            List<Entry> pending = new ArrayList<>();
+            synchronized (this) {
+                if (subscriber.cursor < getOldestSequence() - 1) {
+                    subscriber.cursor = nextSequence - 1;
+                    subscriber.reset = true;
+                } else {
+                    long end = Math.min(nextSequence, subscriber.cursor + 1 + drainBudget);
+                    for (long sequence = subscriber.cursor + 1; sequence < end; sequence++) {
+                        pending.add(buffer[(int) (sequence % buffer.length)]);
+                    }
+                }
+            }
+            if (subscriber.reset) {
+                resets.increment();
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(getEventId(subscriber.cursor))
+                        .name("reset")
+                        .data(""));
+                subscriber.reset = false;
+            }
+            for (Entry entry : pending) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(getEventId(entry.sequence))
+                        .name("change")
+                        .data(entry.change, MediaType.APPLICATION_JSON));
+                subscriber.cursor = entry.sequence;
+                if (System.currentTimeMillis() - started > sendTimeoutMs) {
+                    logger.info("Change feed subscriber is dropped: too slow to read");
+                    drops.increment();
+                    subscribers.remove(subscriber);
+                    subscriber.emitter.complete();
+                    return;
+                }
+            }
+            if (subscriber.heartbeat && pending.isEmpty()) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            subscriber.heartbeat = false;
+        } catch (IOException | IllegalStateException e) {
+            logger.info("Change feed subscriber is dropped: " + e.getMessage());
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        if (hasPending(subscriber)) {
+            schedule(subscriber);
+        }
+    }
+
+    private synchronized boolean hasPending(Subscriber subscriber) {
+        return subscriber.cursor < nextSequence - 1 || subscriber.heartbeat;
+    }
+
+    private long getOldestSequence() {
+        return Math.max(1, nextSequence - buffer.length);
+    }
+
+    private String getEventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    private Long parseSequence(String eventId) {
+        int dash = eventId.lastIndexOf('-');
+        if (dash < 0 || !epoch.equals(eventId.substring(0, dash))) {
+            return null;
+        }
+        try {
+            return Long.valueOf(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Action getAction(Object before, Object after) {
+        if (before == null) {
+            return Action.CREATED;
+        }
+        return after == null ? Action.DELETED : Action.UPDATED;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getResetCount() {
+        return resets.sum();
+    }
+
+    public long getDropCount() {
+        return drops.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("changes.subscribers", this, ChangeFeed::getSubscriberCount)
+                .register(registry);
+        FunctionCounter.builder("changes.resets", this, ChangeFeed::getResetCount)
+                .register(registry);
+        FunctionCounter.builder("changes.drops", this, ChangeFeed::getDropCount)
+                .register(registry);
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final ChangeDTO change;
+
+        private Entry(long sequence, ChangeDTO change) {
+            this.sequence = sequence;
+            this.change = change;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // cursor and reset are written by the draining thread only
+        private volatile long cursor;
+        private volatile boolean reset;
+        private volatile boolean heartbeat;
+
+        private Subscriber(SseEmitter emitter, long cursor, boolean reset) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+            this.reset = reset;
+        }
+    }
+}
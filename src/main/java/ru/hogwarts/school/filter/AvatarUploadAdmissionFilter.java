@@ -0,0 +1,143 @@
+package ru.hogwarts.school.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.hogwarts.school.exception.ErrorInfo;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of avatar uploads handled at once. Requests over the limit wait in a short
+ * queue and are turned away with 503 and Retry-After when the queue is full or the wait times out.
+ * Runs before multipart parsing, so a rejected upload is never spooled.
+ */
+@Component
+public class AvatarUploadAdmissionFilter extends OncePerRequestFilter implements MeterBinder {
+    private static final List<String> UPLOAD_PATTERNS = List.of("/student/*/avatar", "/avatar/import");
+
+    private final Logger logger = LoggerFactory.getLogger(AvatarUploadAdmissionFilter.class);
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ObjectMapper objectMapper;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final int queueCapacity;
+    private final long queueTimeoutMs;
+    private final long retryAfterSeconds;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    public AvatarUploadAdmissionFilter(ObjectMapper objectMapper,
+                                       @Value("${avatars.upload.max-in-flight:4}") int maxInFlight,
+                                       @Value("${avatars.upload.queue-capacity:8}") int queueCapacity,
+                                       @Value("${avatars.upload.queue-timeout-ms:2000}") long queueTimeoutMs,
+                                       @Value("${avatars.upload.retry-after-seconds:2}") long retryAfterSeconds,
+                                       @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize) {
+        if (maxInFlight >= connectionPoolSize) {
+            throw new IllegalStateException("avatars.upload.max-in-flight must leave connections for the read APIs: "
+                    + maxInFlight + " >= " + connectionPoolSize);
+        }
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(maxInFlight, true);
+        this.maxInFlight = maxInFlight;
+        this.queueCapacity = queueCapacity;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!HttpMethod.POST.matches(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return UPLOAD_PATTERNS.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (!acquire()) {
+            rejected.increment();
+            logger.warn("Avatar upload is rejected: " + maxInFlight + " in flight, " + waiting.get() + " waiting");
+            reject(response);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean acquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (waiting.incrementAndGet() > queueCapacity) {
+            waiting.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorInfo("Too many avatar uploads, retry later"));
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("avatar.upload.in.flight", this, AvatarUploadAdmissionFilter::getInFlight)
+                .register(registry);
+        Gauge.builder("avatar.upload.waiting", this, AvatarUploadAdmissionFilter::getWaiting)
+                .register(registry);
+        Gauge.builder("avatar.upload.max.in.flight", this, filter -> filter.maxInFlight)
+                .register(registry);
+        FunctionCounter.builder("avatar.upload.rejected", this, AvatarUploadAdmissionFilter::getRejectedCount)
+                .register(registry);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.hogwarts.school.filter;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.hogwarts.school.datasource.ReplicaStickiness;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Keeps a client that has just written on the primary until the deadline in its
+ * {@link ReplicaStickiness#COOKIE} cookie passes.
+ */
+public class ReplicaStickinessFilter extends OncePerRequestFilter {
+    private final ReplicaStickiness stickiness;
+
+    public ReplicaStickinessFilter(ReplicaStickiness stickiness) {
+        this.stickiness = stickiness;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Long until = getStickyUntil(request);
+        if (until != null) {
+            stickiness.stickUntil(until);
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            stickiness.clear();
+        }
+    }
+
+    private Long getStickyUntil(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return null;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (ReplicaStickiness.COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.valueOf(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.hogwarts.school.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Hit ratios of the second-level cache regions and the query cache. The raw hit and miss
+ * counters are published by Spring Boot as {@code hibernate.second.level.cache.requests}
+ * and {@code hibernate.query.cache.requests}.
+ */
+@Component
+public class SecondLevelCacheMetrics implements MeterBinder {
+    private final Statistics statistics;
+
+    public SecondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            if (!isDomainDataRegion(region)) {
+                continue;
+            }
+            Gauge.builder("hibernate.cache.hit.ratio", statistics, stats -> regionHitRatio(stats.getDomainDataRegionStatistics(region)))
+                    .tag("region", region)
+                    .register(registry);
+        }
+        Gauge.builder("hibernate.cache.hit.ratio", statistics, stats -> ratio(stats.getQueryCacheHitCount(), stats.getQueryCacheMissCount()))
+                .tag("region", "query")
+                .register(registry);
+    }
+
+    private boolean isDomainDataRegion(String region) {
+        try {
+            statistics.getDomainDataRegionStatistics(region);
+            return true;
+        } catch (IllegalArgumentException e) {
+            // query results and update timestamps regions
+            return false;
+        }
+    }
+
+    private static double regionHitRatio(CacheRegionStatistics region) {
+        return region != null ? ratio(region.getHitCount(), region.getMissCount()) : Double.NaN;
+    }
+
+    private static double ratio(long hits, long misses) {
+        return hits + misses > 0 ? (double) hits / (hits + misses) : Double.NaN;
+    }
+}
@@ -9,11 +9,15 @@ public class Avatar {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String filePath;
+    private Long fileOffset;
     private Long fileSize;
     private String mediaType;
+    private String fileHash;
+    private boolean fileMissing;
     @Lob
     private byte[] data;
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(unique = true)
     private Student student;
 
     public Avatar() {
@@ -43,6 +47,14 @@ public class Avatar {
         this.filePath = filePath;
     }
 
+    public Long getFileOffset() {
+        return fileOffset;
+    }
+
+    public void setFileOffset(Long fileOffset) {
+        this.fileOffset = fileOffset;
+    }
+
     public Long getFileSize() {
         return fileSize;
     }
@@ -59,6 +71,22 @@ public class Avatar {
         this.mediaType = mediaType;
     }
 
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
+    }
+
+    public boolean isFileMissing() {
+        return fileMissing;
+    }
+
+    public void setFileMissing(boolean fileMissing) {
+        this.fileMissing = fileMissing;
+    }
+
     public byte[] getData() {
         return data;
     }
@@ -93,8 +121,11 @@ public class Avatar {
         return "Avatar{" +
                 "id=" + id +
                 ", filePath='" + filePath + '\'' +
+                ", fileOffset=" + fileOffset +
                 ", fileSize=" + fileSize +
                 ", mediaType='" + mediaType + '\'' +
+                ", fileHash='" + fileHash + '\'' +
+                ", fileMissing=" + fileMissing +
                 '}';
     }
 }
@@ -0,0 +1,68 @@
+package ru.hogwarts.school.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.Objects;
+
+@Entity
+public class AvatarBlob {
+    @Id
+    private String hash;
+    private Long fileSize;
+    private Long refCount;
+
+    public AvatarBlob() {
+    }
+
+    public AvatarBlob(String hash, Long fileSize, Long refCount) {
+        this.hash = hash;
+        this.fileSize = fileSize;
+        this.refCount = refCount;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public Long getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(Long refCount) {
+        this.refCount = refCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarBlob that = (AvatarBlob) o;
+        return Objects.equals(hash, that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hash);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarBlob{" +
+                "hash='" + hash + '\'' +
+                ", fileSize=" + fileSize +
+                ", refCount=" + refCount +
+                '}';
+    }
+}
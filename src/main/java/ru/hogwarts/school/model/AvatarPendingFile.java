@@ -0,0 +1,86 @@
+package ru.hogwarts.school.model;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A stored avatar file that no committed row points at yet. Deleted in the same
+ * transaction that links the file to its avatar; leftovers are released on recovery.
+ */
+@Entity
+public class AvatarPendingFile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String filePath;
+    private String fileHash;
+    private Instant createdAt;
+
+    public AvatarPendingFile() {
+    }
+
+    public AvatarPendingFile(String filePath, String fileHash, Instant createdAt) {
+        this.filePath = filePath;
+        this.fileHash = fileHash;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarPendingFile that = (AvatarPendingFile) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarPendingFile{" +
+                "id=" + id +
+                ", filePath='" + filePath + '\'' +
+                ", fileHash='" + fileHash + '\'' +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -1,18 +1,26 @@
 package ru.hogwarts.school.model;
 
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "faculty")
 public class Faculty {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "faculty_id_seq")
+    @SequenceGenerator(name = "faculty_id_seq", sequenceName = "faculty_id_seq", allocationSize = 50)
     private Long id;
     private String name;
     private String color;
     @OneToMany(mappedBy = "faculty")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "faculty-students")
     private Set<Student> students;
 
     public Faculty() {
@@ -78,19 +86,25 @@ public class Faculty {
         this.students = students;
     }
 
+    /**
+     * Sets the membership on the student side; the members are updated only when already loaded,
+     * so adding one student never reads the whole faculty. A caller changing the membership of a
+     * persistent faculty evicts its cached members through {@code FacultyStudentsCache}.
+     */
     public void addStudent(Student student) {
         if (students == null) {
             students = new HashSet<>();
         }
-        students.add(student);
+        if (Hibernate.isInitialized(students)) {
+            students.add(student);
+        }
         student.setFaculty(this);
     }
 
     public void removeStudent(Student student) {
-        if (students == null) {
-            students = new HashSet<>();
+        if (students != null && Hibernate.isInitialized(students)) {
+            students.remove(student);
         }
-        students.remove(student);
         student.setFaculty(null);
     }
 }
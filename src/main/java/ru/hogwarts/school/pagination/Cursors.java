@@ -0,0 +1,74 @@
+package ru.hogwarts.school.pagination;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import ru.hogwarts.school.dto.CursorPageDTO;
+import ru.hogwarts.school.exception.BadDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Opaque keyset cursors: a cursor carries the id of the last row returned, and the
+ * next page is {@code id > :lastId ORDER BY id LIMIT :n}.
+ */
+public final class Cursors {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+    private static final String PREFIX = "id:";
+
+    private Cursors() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the id to continue after; {@code 0} for the first page.
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new BadDataException("Invalid cursor");
+            }
+            return Long.parseLong(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new BadDataException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Asks for one row more than the page holds, so the presence of a next page is known without a count.
+     */
+    public static Pageable pageable(Integer limit) {
+        return PageRequest.of(0, normalizeLimit(limit) + 1);
+    }
+
+    public static <E, T> CursorPageDTO<T> page(List<E> rows, Integer limit, Function<E, Long> id, Function<E, T> mapper) {
+        int size = normalizeLimit(limit);
+        String next = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            next = encode(id.apply(rows.get(size - 1)));
+        }
+        return new CursorPageDTO<>(rows.stream().map(mapper).collect(Collectors.toList()), next);
+    }
+
+    private static int normalizeLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1) {
+            throw new BadDataException("limit must be positive");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.AvatarBlob;
+
+public interface AvatarBlobRepository extends JpaRepository<AvatarBlob, String> {
+    @Transactional
+    @Modifying
+    @Query(value = "insert into avatar_blob (hash, file_size, ref_count) values (:hash, :fileSize, 1) " +
+            "on conflict (hash) do update set ref_count = avatar_blob.ref_count + 1", nativeQuery = true)
+    void acquire(@Param("hash") String hash, @Param("fileSize") Long fileSize);
+
+    @Modifying
+    @Query("update AvatarBlob b set b.refCount = b.refCount - 1 where b.hash = :hash")
+    int decrement(@Param("hash") String hash);
+
+    @Modifying
+    @Query("delete from AvatarBlob b where b.hash = :hash and b.refCount <= 0")
+    int deleteUnreferenced(@Param("hash") String hash);
+}
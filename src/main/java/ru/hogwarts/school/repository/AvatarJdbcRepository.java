@@ -0,0 +1,114 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.storage.StoredFile;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Set-based avatar writes for bulk operations, bypassing the persistence context.
+ */
+@Repository
+public class AvatarJdbcRepository {
+    private static final String SELECT_BY_STUDENT_IDS =
+            "select student_id, file_path, file_offset, file_size, file_hash, media_type from avatar where student_id in (:ids)";
+    private static final String UPDATE =
+            "update avatar set file_path = :filePath, file_offset = :fileOffset, file_size = :fileSize, " +
+                    "file_hash = :fileHash, media_type = :mediaType, file_missing = false, data = null where student_id = :studentId";
+    private static final String INSERT =
+            "insert into avatar (student_id, file_path, file_offset, file_size, file_hash, media_type) " +
+                    "values (:studentId, :filePath, :fileOffset, :fileSize, :fileHash, :mediaType)";
+    private static final String INSERT_PENDING_FILE =
+            "insert into avatar_pending_file (file_path, file_hash, created_at) values (?, ?, ?)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public AvatarJdbcRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Journals the given files in avatar_pending_file with one insert batch; returns the ids of
+     * the new rows in the order of {@code files}.
+     */
+    public List<Long> insertPendingFiles(List<StoredFile> files, Instant createdAt) {
+        if (files.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.getJdbcOperations().execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_PENDING_FILE, new String[]{"id"})) {
+                for (StoredFile file : files) {
+                    statement.setString(1, file.getFilePath());
+                    statement.setString(2, file.getFileHash());
+                    statement.setTimestamp(3, Timestamp.from(createdAt));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                List<Long> ids = new ArrayList<>(files.size());
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                if (ids.size() != files.size()) {
+                    throw new IllegalStateException(ids.size() + " ids are generated for " + files.size() + " pending files");
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Returns the currently stored file of every given student that has an avatar, keyed by student id.
+     */
+    public Map<Long, StoredFile> findFilesByStudentIds(Collection<Long> studentIds) {
+        Map<Long, StoredFile> files = new HashMap<>();
+        if (studentIds.isEmpty()) {
+            return files;
+        }
+        jdbcTemplate.query(SELECT_BY_STUDENT_IDS, Map.of("ids", studentIds), rs -> {
+            files.put(rs.getLong("student_id"), new StoredFile(
+                    rs.getString("file_path"),
+                    rs.getLong("file_offset"),
+                    rs.getLong("file_size"),
+                    rs.getString("file_hash"),
+                    rs.getString("media_type")
+            ));
+        });
+        return files;
+    }
+
+    /**
+     * Points the avatars of the given students at the new files: one update batch for the students
+     * in {@code existing}, one insert batch for the rest.
+     */
+    public void saveAll(Map<Long, StoredFile> files, Set<Long> existing) {
+        List<SqlParameterSource> updates = new ArrayList<>();
+        List<SqlParameterSource> inserts = new ArrayList<>();
+        files.forEach((studentId, file) -> {
+            SqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("studentId", studentId)
+                    .addValue("filePath", file.getFilePath())
+                    .addValue("fileOffset", file.getFileOffset())
+                    .addValue("fileSize", file.getFileSize())
+                    .addValue("fileHash", file.getFileHash())
+                    .addValue("mediaType", file.getMediaType());
+            (existing.contains(studentId) ? updates : inserts).add(params);
+        });
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE, updates.toArray(new SqlParameterSource[0]));
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT, inserts.toArray(new SqlParameterSource[0]));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.hogwarts.school.model.AvatarPendingFile;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface AvatarPendingFileRepository extends JpaRepository<AvatarPendingFile, Long> {
+    List<AvatarPendingFile> findByCreatedAtBefore(Instant createdAt);
+}
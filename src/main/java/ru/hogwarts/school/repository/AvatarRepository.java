@@ -1,10 +1,63 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repository.projection.AvatarMetadata;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
     Optional<Avatar> findByStudentId(Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Avatar a where a.student.id = :studentId")
+    Optional<Avatar> findForUpdateByStudentId(@Param("studentId") Long studentId);
+
+    Optional<AvatarMetadata> findMetadataByStudentId(Long id);
+
+    List<AvatarMetadata> findMetadataByFilePath(String filePath);
+
+    boolean existsByFilePath(String filePath);
+
+    boolean existsByFileHash(String fileHash);
+
+    @Query("select coalesce(sum(a.fileSize), 0) from Avatar a where a.filePath = :filePath")
+    long sumFileSizeByFilePath(@Param("filePath") String filePath);
+
+    @Transactional
+    @Modifying
+    @Query("update Avatar a set a.filePath = :newPath, a.fileOffset = :newOffset " +
+            "where a.id = :id and a.filePath = :oldPath and a.fileOffset = :oldOffset")
+    int relocate(@Param("id") Long id,
+                 @Param("oldPath") String oldPath,
+                 @Param("oldOffset") Long oldOffset,
+                 @Param("newPath") String newPath,
+                 @Param("newOffset") Long newOffset);
+
+    List<AvatarMetadata> findByIdGreaterThanOrderById(Long id, Pageable pageable);
+
+    @Query("select a.filePath from Avatar a where a.filePath in :filePaths")
+    Set<String> findReferencedFilePaths(@Param("filePaths") Collection<String> filePaths);
+
+    @Query("select a.fileHash from Avatar a where a.fileHash in :fileHashes")
+    Set<String> findReferencedFileHashes(@Param("fileHashes") Collection<String> fileHashes);
+
+    @Transactional
+    @Modifying
+    @Query("update Avatar a set a.fileMissing = :fileMissing where a.id in :ids")
+    int updateFileMissing(@Param("ids") Collection<Long> ids, @Param("fileMissing") boolean fileMissing);
+
+    @Modifying
+    @Query("delete from Avatar a where a.student.id = :studentId")
+    int deleteByStudentId(@Param("studentId") Long studentId);
 }
@@ -1,12 +1,22 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import ru.hogwarts.school.model.Faculty;
 
+import javax.persistence.QueryHint;
+
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
-    List<Faculty> findByColorIgnoreCase(String color);
+    List<Faculty> findByIdGreaterThanOrderById(Long id, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<Faculty> findByColorIgnoreCaseAndIdGreaterThanOrderById(String color, Long id, Pageable pageable);
 
-    List<Faculty> findByNameIgnoreCase(String name);
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<Faculty> findByNameIgnoreCaseAndIdGreaterThanOrderById(String name, Long id, Pageable pageable);
 }
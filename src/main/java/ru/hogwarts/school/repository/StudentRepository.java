@@ -1,22 +1,106 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.projection.AgeCount;
+import ru.hogwarts.school.repository.projection.StudentMatch;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface StudentRepository extends JpaRepository<Student, Long> {
-    List<Student> findByAge(Integer age);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Student s where s.id = :id")
+    Optional<Student> findForUpdateById(@Param("id") Long id);
+
+    List<Student> findByIdGreaterThanOrderById(Long id, Pageable pageable);
+
+    List<Student> findByAgeAndIdGreaterThanOrderById(Integer age, Long id, Pageable pageable);
 
-    List<Student> findByAgeBetween(Integer min, Integer max);
+    List<Student> findByAgeBetweenAndIdGreaterThanOrderById(Integer min, Integer max, Long id, Pageable pageable);
 
-    @Query(value = "select count(*) from student", nativeQuery = true)
-    Long getCount();
+    List<Student> findByFacultyIdAndIdGreaterThanOrderById(Long facultyId, Long id, Pageable pageable);
 
-    @Query(value = "select avg(age) from student", nativeQuery = true)
-    Double getAvgAge();
+    /**
+     * Read from the primary even with replicas configured: the statistics load must see every
+     * write whose event has already been applied.
+     */
+    @Transactional
+    @Query("select f.id as faculty, s.age as age, count(s) as students " +
+            "from Student s left join s.faculty f group by f.id, s.age")
+    List<AgeCount> countByFacultyAndAge();
+
+    List<Student> findByNameStartingWithIgnoreCase(String prefix, Pageable pageable);
+
+    /**
+     * Names containing {@code query} as a word within the trigram similarity threshold, or as a
+     * substring; both conditions are answered from the {@code gin_trgm_ops} index.
+     */
+    @Query(value = "select s.id as id, s.name as name, s.age as age, s.faculty_id as faculty, " +
+            "word_similarity(:query, s.name) as score " +
+            "from student s " +
+            "where :query <% s.name or s.name ilike :pattern escape '\\' " +
+            "order by score desc, s.name, s.id " +
+            "limit :limit", nativeQuery = true)
+    List<StudentMatch> findSimilarByName(@Param("query") String query, @Param("pattern") String pattern, @Param("limit") int limit);
 
     @Query(value = "select * from student order by id desc limit 5", nativeQuery = true)
     List<Student> getLastStudents();
+
+    /**
+     * Forward-only scan of all students as DTOs; must be consumed inside a transaction
+     * so the driver can page rows with the fetch size instead of buffering the result.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select new ru.hogwarts.school.dto.StudentDetailDTO(s.id, s.name, s.age, f.id) " +
+            "from Student s left join s.faculty f order by s.id")
+    Stream<StudentDetailDTO> streamAllDetails();
+
+    @Query("select new ru.hogwarts.school.dto.StudentDetailDTO(s.id, s.name, s.age, s.faculty.id) " +
+            "from Student s where s.faculty.id = :facultyId")
+    List<StudentDetailDTO> findDetailsByFacultyId(@Param("facultyId") Long facultyId);
+
+    @Query("select s.id from Student s where s.faculty.id = :facultyId")
+    Set<Long> findIdsByFacultyId(@Param("facultyId") Long facultyId);
+
+    /**
+     * Bulk updates skip the persistence context, so pending changes are flushed before
+     * and the context is cleared after; the second-level cache regions are evicted by Hibernate.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Student s set s.faculty = :faculty where s.id in :ids")
+    int updateFaculty(@Param("faculty") Faculty faculty, @Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Student s set s.faculty = null where s.faculty.id = :facultyId and s.id in :ids")
+    int clearFaculty(@Param("facultyId") Long facultyId, @Param("ids") Collection<Long> ids);
+
+    /**
+     * Leaves the persistence context alone, so the faculty stays managed for its delete;
+     * students already loaded in the context keep the old membership.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update Student s set s.faculty = null where s.faculty.id = :facultyId")
+    int detachAllFromFaculty(@Param("facultyId") Long facultyId);
+
+    @Query("select s.id from Student s where s.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.repository.projection;
+
+public interface AgeCount {
+    Long getFaculty();
+
+    Integer getAge();
+
+    Long getStudents();
+}
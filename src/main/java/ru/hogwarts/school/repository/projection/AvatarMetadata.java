@@ -0,0 +1,17 @@
+package ru.hogwarts.school.repository.projection;
+
+public interface AvatarMetadata {
+    Long getId();
+
+    String getFilePath();
+
+    Long getFileOffset();
+
+    Long getFileSize();
+
+    String getMediaType();
+
+    String getFileHash();
+
+    boolean isFileMissing();
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.repository.projection;
+
+public interface StudentMatch {
+    Long getId();
+
+    String getName();
+
+    Integer getAge();
+
+    Long getFaculty();
+
+    Double getScore();
+}
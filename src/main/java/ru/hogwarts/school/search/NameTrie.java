@@ -0,0 +1,186 @@
+package ru.hogwarts.school.search;
+
+import ru.hogwarts.school.dto.StudentDetailDTO;
+
+import java.util.*;
+
+/**
+ * Radix tree over lower-cased student names. Each edge carries a run of characters, so there is
+ * at most one node per distinct name plus one per branching point. Students sharing a name hang
+ * off the same node ordered by id. Not thread-safe.
+ */
+class NameTrie {
+    private final Node root = new Node("");
+    private int size;
+
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    void put(StudentDetailDTO student) {
+        String key = normalize(student.getName());
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.getChild(key.charAt(i));
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.putChild(child);
+                node = child;
+                break;
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.putChild(child);
+                node.putChild(middle);
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.values == null) {
+            node.values = new TreeMap<>();
+        }
+        if (node.values.put(student.getId(), student) == null) {
+            size++;
+        }
+    }
+
+    boolean remove(StudentDetailDTO student) {
+        boolean removed = remove(root, normalize(student.getName()), 0, student.getId());
+        if (removed) {
+            size--;
+        }
+        return removed;
+    }
+
+    private boolean remove(Node node, String key, int i, Long id) {
+        if (i == key.length()) {
+            if (node.values == null || node.values.remove(id) == null) {
+                return false;
+            }
+            if (node.values.isEmpty()) {
+                node.values = null;
+            }
+            return true;
+        }
+        Node child = node.getChild(key.charAt(i));
+        if (child == null || !key.startsWith(child.label, i)) {
+            return false;
+        }
+        boolean removed = remove(child, key, i + child.label.length(), id);
+        if (removed && child.values == null) {
+            if (child.children == null) {
+                node.children.remove(child.label.charAt(0));
+                if (node.children.isEmpty()) {
+                    node.children = null;
+                }
+            } else if (child.children.size() == 1) {
+                Node only = child.children.firstEntry().getValue();
+                only.label = child.label + only.label;
+                node.putChild(only);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns up to {@code limit} students whose name starts with {@code prefix}, ordered by name and id.
+     */
+    List<StudentDetailDTO> search(String prefix, int limit) {
+        String key = normalize(prefix);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.getChild(key.charAt(i));
+            if (child == null) {
+                return Collections.emptyList();
+            }
+            int length = Math.min(child.label.length(), key.length() - i);
+            if (!child.label.regionMatches(0, key, i, length)) {
+                return Collections.emptyList();
+            }
+            node = child;
+            i += length;
+        }
+
+        List<StudentDetailDTO> result = new ArrayList<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty() && result.size() < limit) {
+            Node current = stack.pop();
+            if (current.values != null) {
+                for (StudentDetailDTO student : current.values.values()) {
+                    if (result.size() == limit) {
+                        break;
+                    }
+                    result.add(student);
+                }
+            }
+            if (current.children != null) {
+                for (Node child : current.children.descendingMap().values()) {
+                    stack.push(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Leaves the students of {@code facultyId} without a faculty; visits every node.
+     */
+    void clearFaculty(Long facultyId) {
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            if (current.values != null) {
+                for (Map.Entry<Long, StudentDetailDTO> entry : current.values.entrySet()) {
+                    StudentDetailDTO student = entry.getValue();
+                    if (facultyId.equals(student.getFaculty())) {
+                        entry.setValue(new StudentDetailDTO(student.getId(), student.getName(), student.getAge(), null));
+                    }
+                }
+            }
+            if (current.children != null) {
+                current.children.values().forEach(stack::push);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node {
+        private String label;
+        private TreeMap<Character, Node> children;
+        private TreeMap<Long, StudentDetailDTO> values;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private Node getChild(char first) {
+            return children != null ? children.get(first) : null;
+        }
+
+        private void putChild(Node child) {
+            if (children == null) {
+                children = new TreeMap<>();
+            }
+            children.put(child.label.charAt(0), child);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.hogwarts.school.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory prefix index over student names. It is built from one streaming scan once the
+ * application is ready and follows {@link StudentChangedEvent}s and faculty removals after commit.
+ * Changes that commit while the scan runs are replayed onto the new trie before it is swapped in.
+ */
+@Component
+public class StudentNameIndex {
+    private final Logger logger = LoggerFactory.getLogger(StudentNameIndex.class);
+    private final StudentRepository studentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private NameTrie trie = new NameTrie();
+    private List<Consumer<NameTrie>> missedChanges;
+
+    private volatile boolean ready;
+
+    public StudentNameIndex(StudentRepository studentRepository, TransactionTemplate transactionTemplate) {
+        this.studentRepository = studentRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            missedChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        NameTrie fresh = new NameTrie();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<StudentDetailDTO> students = studentRepository.streamAllDetails()) {
+                    students.filter(student -> student.getName() != null).forEach(fresh::put);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Student name index is not built", e);
+            lock.writeLock().lock();
+            try {
+                missedChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // replaying is harmless for changes the scan already saw: entries are keyed by name and id
+            missedChanges.forEach(change -> change.accept(fresh));
+            missedChanges = null;
+            trie = fresh;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Student name index is built: " + fresh.size() + " students in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        change(target -> apply(target, event));
+    }
+
+    /**
+     * The members of a removed faculty stay in the index without a faculty.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        if (event.getAfter() == null && event.getBefore() != null) {
+            Long facultyId = event.getBefore().getId();
+            change(target -> target.clearFaculty(facultyId));
+        }
+    }
+
+    private void change(Consumer<NameTrie> change) {
+        lock.writeLock().lock();
+        try {
+            if (missedChanges != null) {
+                missedChanges.add(change);
+            }
+            change.accept(trie);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@code false} until the first build completes; callers should fall back to the database until then.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public List<StudentDetailDTO> search(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return trie.search(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(NameTrie target, StudentChangedEvent event) {
+        if (event.getBefore() != null && event.getBefore().getName() != null) {
+            target.remove(event.getBefore());
+        }
+        if (event.getAfter() != null && event.getAfter().getName() != null) {
+            target.put(event.getAfter());
+        }
+    }
+}
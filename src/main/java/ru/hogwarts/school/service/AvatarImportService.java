@@ -0,0 +1,249 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.cache.AvatarPreviewCache;
+import ru.hogwarts.school.dto.AvatarImportResultDTO;
+import ru.hogwarts.school.dto.AvatarImportResultDTO.Status;
+import ru.hogwarts.school.event.AvatarUploadedEvent;
+import ru.hogwarts.school.repository.AvatarJdbcRepository;
+import ru.hogwarts.school.repository.AvatarPendingFileRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.storage.AvatarStorage;
+import ru.hogwarts.school.storage.StoredFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports avatars from a ZIP archive whose entries are named {@code <student id>.<extension>}.
+ * Entries are stored as the archive streams in; every {@code avatars.import.batch-size} entries
+ * the students are resolved with one query and the avatar rows are written in JDBC batches.
+ * The stored files of a batch are journaled in avatar_pending_file with one insert batch, in its
+ * own transaction, before they are linked. A file stored after the previous batch and lost before
+ * its journal commits is left to the avatar reconciler.
+ */
+@Service
+public class AvatarImportService {
+    private final Logger logger = LoggerFactory.getLogger(AvatarImportService.class);
+    private final StudentRepository studentRepository;
+    private final AvatarJdbcRepository avatarJdbcRepository;
+    private final AvatarStorage avatarStorage;
+    private final AvatarPendingFileRepository avatarPendingFileRepository;
+    private final AvatarPreviewCache avatarPreviewCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxEntrySize;
+
+    public AvatarImportService(StudentRepository studentRepository,
+                               AvatarJdbcRepository avatarJdbcRepository,
+                               AvatarStorage avatarStorage,
+                               AvatarPendingFileRepository avatarPendingFileRepository,
+                               AvatarPreviewCache avatarPreviewCache,
+                               ApplicationEventPublisher eventPublisher,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${avatars.import.batch-size:100}") int batchSize,
+                               @Value("${avatars.import.max-entry-size:307200}") int maxEntrySize) {
+        this.studentRepository = studentRepository;
+        this.avatarJdbcRepository = avatarJdbcRepository;
+        this.avatarStorage = avatarStorage;
+        this.avatarPendingFileRepository = avatarPendingFileRepository;
+        this.avatarPreviewCache = avatarPreviewCache;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * A broken archive does not undo the entries imported before the damage: they are returned
+     * as usual, followed by one {@link Status#FAILED} result for the unreadable tail.
+     */
+    public List<AvatarImportResultDTO> importAvatars(InputStream archive) throws IOException {
+        logger.info("importAvatars method is called");
+
+        List<AvatarImportResultDTO> results = new ArrayList<>();
+        List<PendingEntry> pending = new ArrayList<>(batchSize);
+        Set<Long> seen = new HashSet<>();
+
+        try (ZipInputStream zip = new ZipInputStream(archive)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                PendingEntry stored = storeEntry(entry.getName(), zip, seen, results);
+                if (stored != null) {
+                    pending.add(stored);
+                }
+                if (pending.size() >= batchSize) {
+                    flush(pending, results);
+                }
+            }
+        } catch (ZipException e) {
+            flush(pending, results);
+            logger.error("Avatar archive is broken after " + results.size() + " entries", e);
+            results.add(new AvatarImportResultDTO(null, null, Status.FAILED));
+            return results;
+        }
+        flush(pending, results);
+        return results;
+    }
+
+    private PendingEntry storeEntry(String entryName, InputStream zip, Set<Long> seen, List<AvatarImportResultDTO> results) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        Long studentId = dot > 0 ? parseId(fileName.substring(0, dot)) : null;
+        if (studentId == null) {
+            results.add(new AvatarImportResultDTO(entryName, null, Status.INVALID_NAME));
+            return null;
+        }
+        if (!seen.add(studentId)) {
+            results.add(new AvatarImportResultDTO(entryName, studentId, Status.DUPLICATE));
+            return null;
+        }
+
+        try {
+            // entries are read whole so an oversized one never replaces the current avatar
+            byte[] data = zip.readNBytes(maxEntrySize + 1);
+            if (data.length > maxEntrySize) {
+                results.add(new AvatarImportResultDTO(entryName, studentId, Status.TOO_BIG));
+                return null;
+            }
+            StoredFile file = avatarStorage.store(studentId, fileName.substring(dot + 1), null, new ByteArrayInputStream(data));
+            return new PendingEntry(entryName, studentId, file);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Avatar entry " + entryName + " is not stored", e);
+            results.add(new AvatarImportResultDTO(entryName, studentId, Status.FAILED));
+            return null;
+        }
+    }
+
+    private void flush(List<PendingEntry> pending, List<AvatarImportResultDTO> results) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Set<Long> ids = new HashSet<>();
+        pending.forEach(entry -> ids.add(entry.studentId));
+        Set<Long> existing = new HashSet<>(studentRepository.findExistingIds(ids));
+
+        Map<Long, StoredFile> files = new HashMap<>();
+        List<PendingEntry> accepted = new ArrayList<>();
+        for (PendingEntry entry : pending) {
+            if (existing.contains(entry.studentId)) {
+                files.put(entry.studentId, entry.file);
+                accepted.add(entry);
+            } else {
+                release(entry.file);
+                results.add(new AvatarImportResultDTO(entry.entryName, entry.studentId, Status.STUDENT_NOT_FOUND));
+            }
+        }
+        pending.clear();
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        List<Long> journalIds;
+        try {
+            List<StoredFile> journaled = new ArrayList<>(accepted.size());
+            accepted.forEach(entry -> journaled.add(entry.file));
+            journalIds = transactionTemplate.execute(status -> avatarJdbcRepository.insertPendingFiles(journaled, Instant.now()));
+        } catch (RuntimeException e) {
+            logger.error("Avatar batch of " + accepted.size() + " entries is not journaled", e);
+            fail(accepted, Collections.emptyList(), results);
+            return;
+        }
+
+        Map<Long, StoredFile> previous;
+        try {
+            previous = transactionTemplate.execute(status -> {
+                Map<Long, StoredFile> replaced = avatarJdbcRepository.findFilesByStudentIds(files.keySet());
+                avatarJdbcRepository.saveAll(files, replaced.keySet());
+                avatarPendingFileRepository.deleteAllByIdInBatch(journalIds);
+                return replaced;
+            });
+        } catch (RuntimeException e) {
+            logger.error("Avatar batch of " + accepted.size() + " entries is not saved", e);
+            fail(accepted, journalIds, results);
+            return;
+        }
+        previous.values().forEach(this::release);
+
+        for (PendingEntry entry : accepted) {
+            avatarPreviewCache.invalidate(entry.studentId);
+            eventPublisher.publishEvent(new AvatarUploadedEvent(
+                    entry.studentId,
+                    entry.file.getFilePath(),
+                    entry.file.getFileOffset(),
+                    entry.file.getFileSize(),
+                    entry.file.getFileHash(),
+                    entry.file.getMediaType()
+            ));
+            results.add(new AvatarImportResultDTO(entry.entryName, entry.studentId, Status.IMPORTED));
+        }
+    }
+
+    private boolean release(StoredFile file) {
+        try {
+            avatarStorage.release(file.getFilePath(), file.getFileHash());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("File " + file.getFilePath() + " is not released", e);
+            return false;
+        }
+    }
+
+    /**
+     * Releases the files of a batch that was never linked. The journal rows of the released files
+     * are deleted with one statement; a file that is not released keeps its row for recovery.
+     */
+    private void fail(List<PendingEntry> entries, List<Long> journalIds, List<AvatarImportResultDTO> results) {
+        List<Long> released = new ArrayList<>(journalIds.size());
+        for (int i = 0; i < entries.size(); i++) {
+            PendingEntry entry = entries.get(i);
+            if (release(entry.file) && !journalIds.isEmpty()) {
+                released.add(journalIds.get(i));
+            }
+            results.add(new AvatarImportResultDTO(entry.entryName, entry.studentId, Status.FAILED));
+        }
+        if (!released.isEmpty()) {
+            try {
+                avatarPendingFileRepository.deleteAllByIdInBatch(released);
+            } catch (RuntimeException e) {
+                logger.error("Journal rows of " + released.size() + " released avatar files are not deleted", e);
+            }
+        }
+    }
+
+    private Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class PendingEntry {
+        private final String entryName;
+        private final Long studentId;
+        private final StoredFile file;
+
+        private PendingEntry(String entryName, Long studentId, StoredFile file) {
+            this.entryName = entryName;
+            this.studentId = studentId;
+            this.file = file;
+        }
+    }
+}
@@ -2,99 +2,203 @@ package ru.hogwarts.school.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.cache.AvatarPreview;
+import ru.hogwarts.school.cache.AvatarPreviewCache;
 import ru.hogwarts.school.dto.AvatarNotDetailDTO;
+import ru.hogwarts.school.dto.CursorPageDTO;
 import ru.hogwarts.school.dto.mapper.AvatarDTOMapper;
+import ru.hogwarts.school.event.AvatarUploadedEvent;
 import ru.hogwarts.school.exception.NotFoundResourceException;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarPendingFile;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.pagination.Cursors;
+import ru.hogwarts.school.repository.AvatarPendingFileRepository;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.StudentRepository;
-
-import javax.transaction.Transactional;
-import java.io.*;
+import ru.hogwarts.school.repository.projection.AvatarMetadata;
+import ru.hogwarts.school.storage.AvatarFiles;
+import ru.hogwarts.school.storage.AvatarPendingFileRecovery;
+import ru.hogwarts.school.storage.AvatarStorage;
+import ru.hogwarts.school.storage.StoredFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
-@Transactional
 public class AvatarService {
-    @Value("${avatars.dir.path}")
-    private String avatarsDirPath;
-
     private final Logger logger = LoggerFactory.getLogger(AvatarService.class);
     private final StudentRepository studentRepository;
     private final AvatarRepository avatarRepository;
     private final AvatarDTOMapper avatarDTOMapper;
-
-    public AvatarService(StudentRepository studentRepository, AvatarRepository avatarRepository, AvatarDTOMapper avatarDTOMapper) {
+    private final AvatarPreviewCache avatarPreviewCache;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final AvatarStorage avatarStorage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AvatarPendingFileRepository avatarPendingFileRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public AvatarService(StudentRepository studentRepository, AvatarRepository avatarRepository, AvatarDTOMapper avatarDTOMapper, AvatarPreviewCache avatarPreviewCache, AvatarThumbnailService avatarThumbnailService, AvatarStorage avatarStorage, ApplicationEventPublisher eventPublisher, AvatarPendingFileRepository avatarPendingFileRepository, TransactionTemplate transactionTemplate) {
         this.studentRepository = studentRepository;
         this.avatarRepository = avatarRepository;
         this.avatarDTOMapper = avatarDTOMapper;
+        this.avatarPreviewCache = avatarPreviewCache;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.avatarStorage = avatarStorage;
+        this.eventPublisher = eventPublisher;
+        this.avatarPendingFileRepository = avatarPendingFileRepository;
+        this.transactionTemplate = transactionTemplate;
     }
 
 
+    /**
+     * Stores the file with no transaction open, then links it to the avatar in one short
+     * transaction. The target is journaled in avatar_pending_file before the file is written
+     * and until that commit, so a crash in between is undone by {@link AvatarPendingFileRecovery}.
+     */
     public void uploadAvatar(Long studentId, MultipartFile file) throws IOException {
         logger.info("uploadAvatar method is called");
 
-        Student student = studentRepository.findById(studentId)
-                .orElseThrow(() -> {
-                    String message = "Student not found";
-                    logger.error(message);
-                    return new NotFoundResourceException(message);
-                });
-
-        Path filePath = Path.of(avatarsDirPath, studentId + "." + getExtension(file.getOriginalFilename()));
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-
-        try (InputStream is = file.getInputStream();
-             OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-             BufferedInputStream bis = new BufferedInputStream(is, 1024);
-             BufferedOutputStream bos = new BufferedOutputStream(os, 1024);
-        ) {
-            bis.transferTo(bos);
+        if (!studentRepository.existsById(studentId)) {
+            String message = "Student not found";
+            logger.error(message);
+            throw new NotFoundResourceException(message);
         }
 
-        Avatar avatar = avatarRepository.findByStudentId(studentId).orElse(new Avatar());
-        avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(file.getSize());
-        avatar.setMediaType(file.getContentType());
-        avatar.setData(file.getBytes());
+        StoredFile storedFile;
+        AtomicReference<AvatarPendingFile> journaled = new AtomicReference<>();
+        try (InputStream is = file.getInputStream()) {
+            storedFile = avatarStorage.store(studentId, getExtension(file.getOriginalFilename()), file.getContentType(), is,
+                    target -> journaled.set(avatarPendingFileRepository.save(
+                            new AvatarPendingFile(target.getFilePath(), target.getFileHash(), Instant.now()))));
+        }
+        AvatarPendingFile pendingFile = journaled.get();
+
+        StoredFile previousFile;
+        try {
+            previousFile = transactionTemplate.execute(status -> linkAvatar(studentId, storedFile, pendingFile));
+        } catch (RuntimeException e) {
+            avatarStorage.release(storedFile.getFilePath(), storedFile.getFileHash());
+            avatarPendingFileRepository.deleteById(pendingFile.getId());
+            throw e;
+        }
 
+        avatarPreviewCache.invalidate(studentId);
+        if (previousFile != null) {
+            avatarStorage.release(previousFile.getFilePath(), previousFile.getFileHash());
+        }
+        eventPublisher.publishEvent(new AvatarUploadedEvent(
+                studentId,
+                storedFile.getFilePath(),
+                storedFile.getFileOffset(),
+                storedFile.getFileSize(),
+                storedFile.getFileHash(),
+                storedFile.getMediaType()
+        ));
+    }
+
+    /**
+     * Locks the student row first: with no avatar row yet, the avatar lock alone would let two
+     * first uploads both insert.
+     */
+    private StoredFile linkAvatar(Long studentId, StoredFile storedFile, AvatarPendingFile pendingFile) {
+        Student student = studentRepository.findForUpdateById(studentId).orElseThrow(() -> {
+            String message = "Student not found";
+            logger.error(message);
+            return new NotFoundResourceException(message);
+        });
+        Avatar avatar = avatarRepository.findForUpdateByStudentId(studentId).orElse(null);
+        StoredFile previousFile = null;
+        if (avatar == null) {
+            avatar = new Avatar();
+            avatar.setStudent(student);
+        } else if (avatar.getFilePath() != null) {
+            previousFile = new StoredFile(avatar.getFilePath(), avatar.getFileOffset(), avatar.getFileSize(), avatar.getFileHash(), avatar.getMediaType());
+        }
+        avatar.setFilePath(storedFile.getFilePath());
+        avatar.setFileOffset(storedFile.getFileOffset());
+        avatar.setFileSize(storedFile.getFileSize());
+        avatar.setFileHash(storedFile.getFileHash());
+        avatar.setMediaType(storedFile.getMediaType());
+        avatar.setFileMissing(false);
+        avatar.setData(null);
         avatarRepository.save(avatar);
+        avatarPendingFileRepository.deleteById(pendingFile.getId());
+        return previousFile;
     }
 
-    public Avatar findAvatar(Long id) {
-        logger.info("findAvatar method is called");
+    public AvatarMetadata findAvatarMetadata(Long studentId) {
+        logger.info("findAvatarMetadata method is called");
 
-        return avatarRepository.findByStudentId(id).orElseThrow(() -> {
+        return avatarRepository.findMetadataByStudentId(studentId).orElseThrow(() -> {
             String message = "Avatar not found";
             logger.error(message);
             return new NotFoundResourceException(message);
         });
     }
 
+    public AvatarPreview getAvatarPreview(Long studentId, Integer size) throws IOException {
+        logger.info("getAvatarPreview method is called");
+
+        Integer variantSize = avatarThumbnailService.normalizeSize(size);
+        AvatarPreview preview = avatarPreviewCache.get(studentId, variantSize);
+        if (preview != null) {
+            return preview;
+        }
+
+        long version = avatarPreviewCache.version(studentId);
+        AvatarMetadata avatar = findAvatarMetadata(studentId);
+        String mediaType = avatar.getMediaType();
+        Path thumbnailBase = avatarStorage.getThumbnailBase(avatar.getFilePath(), avatar.getFileHash());
+        ByteBuffer buffer;
+        if (avatarThumbnailService.hasVariant(thumbnailBase, mediaType, variantSize)) {
+            Path variant = avatarThumbnailService.getVariantPath(thumbnailBase, mediaType, variantSize);
+            buffer = AvatarFiles.read(variant, 0, Files.size(variant));
+            mediaType = avatarThumbnailService.getVariantMediaType(mediaType);
+        } else {
+            buffer = avatarStorage.read(avatar.getFilePath(), getFileOffset(avatar), avatar.getFileSize());
+        }
+
+        preview = new AvatarPreview(mediaType, buffer);
+        avatarPreviewCache.put(studentId, variantSize, preview, version);
+        return preview;
+    }
+
+    /**
+     * Returns the avatar bytes when the storage serves them from memory,
+     * {@code null} when the file should be streamed instead.
+     */
+    public ByteBuffer getMappedContent(AvatarMetadata avatar) throws IOException {
+        if (!avatarStorage.isMemoryMapped()) {
+            return null;
+        }
+        return avatarStorage.read(avatar.getFilePath(), getFileOffset(avatar), avatar.getFileSize());
+    }
+
+    public static long getFileOffset(AvatarMetadata avatar) {
+        return avatar.getFileOffset() != null ? avatar.getFileOffset() : 0;
+    }
+
     private String getExtension(String fileName) {
         return fileName.substring(fileName.lastIndexOf(".") + 1);
     }
 
-    public List<AvatarNotDetailDTO> findAllByPage(Integer page, Integer pageSize) {
+    @Transactional(readOnly = true)
+    public CursorPageDTO<AvatarNotDetailDTO> findAllByPage(String cursor, Integer limit) {
         logger.info("findAllByPage method is called");
 
-        PageRequest pageRequest = PageRequest.of(page, pageSize);
-        List<Avatar> avatars = avatarRepository.findAll(pageRequest).getContent();
-        return avatars
-                .stream()
-                .map(avatarDTOMapper::toNotDetail)
-                .collect(Collectors.toList());
+        List<AvatarMetadata> avatars = avatarRepository.findByIdGreaterThanOrderById(Cursors.decode(cursor), Cursors.pageable(limit));
+        return Cursors.page(avatars, limit, AvatarMetadata::getId, avatarDTOMapper::toNotDetail);
     }
 }
@@ -0,0 +1,45 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.cache.AvatarPreviewCache;
+import ru.hogwarts.school.event.AvatarUploadedEvent;
+import ru.hogwarts.school.storage.AvatarStorage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+@Component
+public class AvatarThumbnailListener {
+    private final Logger logger = LoggerFactory.getLogger(AvatarThumbnailListener.class);
+    private final AvatarStorage avatarStorage;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final AvatarPreviewCache avatarPreviewCache;
+
+    public AvatarThumbnailListener(AvatarStorage avatarStorage, AvatarThumbnailService avatarThumbnailService, AvatarPreviewCache avatarPreviewCache) {
+        this.avatarStorage = avatarStorage;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.avatarPreviewCache = avatarPreviewCache;
+    }
+
+    @Async("avatarThumbnailExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvatarUploaded(AvatarUploadedEvent event) {
+        logger.info("onAvatarUploaded method is called");
+
+        try {
+            ByteBuffer data = avatarStorage.read(event.getFilePath(), event.getFileOffset(), event.getFileSize());
+            avatarThumbnailService.generateThumbnails(
+                    avatarStorage.getThumbnailBase(event.getFilePath(), event.getFileHash()),
+                    event.getMediaType(),
+                    data
+            );
+            avatarPreviewCache.invalidate(event.getStudentId());
+        } catch (IOException e) {
+            logger.error("Thumbnails for student id=" + event.getStudentId() + " are not generated", e);
+        }
+    }
+}
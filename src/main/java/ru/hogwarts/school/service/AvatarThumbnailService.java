@@ -0,0 +1,169 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.storage.ByteBufferInputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+@Service
+public class AvatarThumbnailService {
+    private final Logger logger = LoggerFactory.getLogger(AvatarThumbnailService.class);
+    private final List<Integer> sizes;
+    private final long maxPixels;
+
+    public AvatarThumbnailService(@Value("${avatars.thumbnails.sizes:64,128,256}") List<Integer> sizes,
+                                  @Value("${avatars.thumbnails.max-pixels:25000000}") long maxPixels) {
+        this.sizes = sizes.stream().sorted().collect(Collectors.toList());
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Writes the variants of {@code data} next to {@code base}. When {@code base} is the
+     * original file itself, variants are dropped if the file is replaced meanwhile.
+     */
+    public void generateThumbnails(Path base, String mediaType, ByteBuffer data) throws IOException {
+        FileTime version = Files.exists(base) ? Files.getLastModifiedTime(base) : null;
+        BufferedImage source = readImage(data, mediaType);
+        if (source == null) {
+            return;
+        }
+
+        int longestSide = Math.max(source.getWidth(), source.getHeight());
+        boolean jpeg = isJpeg(mediaType);
+        Files.createDirectories(base.getParent());
+        for (Integer size : sizes) {
+            if (size >= longestSide) {
+                break;
+            }
+            BufferedImage thumbnail = scale(source, size / (double) longestSide, jpeg);
+
+            Path target = getVariantPath(base, mediaType, size);
+            Path temp = Files.createTempFile(base.getParent(), ".thumbnail", ".tmp");
+            try {
+                ImageIO.write(thumbnail, jpeg ? "jpg" : "png", temp.toFile());
+                if (version != null && (!Files.exists(base) || !version.equals(Files.getLastModifiedTime(base)))) {
+                    logger.info("Avatar " + base + " was replaced, thumbnails are skipped");
+                    return;
+                }
+                Files.move(temp, target, REPLACE_EXISTING, ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Returns the smallest configured variant not smaller than {@code size},
+     * or {@code null} when only the original fits.
+     */
+    public Integer normalizeSize(Integer size) {
+        if (size == null) {
+            return null;
+        }
+        for (Integer variant : sizes) {
+            if (variant >= size) {
+                return variant;
+            }
+        }
+        return null;
+    }
+
+    public boolean hasVariant(Path base, String mediaType, Integer size) {
+        return size != null && Files.exists(getVariantPath(base, mediaType, size));
+    }
+
+    public Path getVariantPath(Path base, String mediaType, Integer size) {
+        return getVariantPath(base, size, getVariantExtension(mediaType));
+    }
+
+    public String getVariantMediaType(String mediaType) {
+        return isJpeg(mediaType) ? "image/jpeg" : "image/png";
+    }
+
+    public void deleteThumbnails(Path base) throws IOException {
+        for (Integer size : sizes) {
+            Files.deleteIfExists(getVariantPath(base, size, "jpg"));
+            Files.deleteIfExists(getVariantPath(base, size, "png"));
+        }
+    }
+
+    public List<Integer> getSizes() {
+        return sizes;
+    }
+
+    private Path getVariantPath(Path base, Integer size, String extension) {
+        String fileName = base.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return base.resolveSibling(baseName + "_" + size + "." + extension);
+    }
+
+    /**
+     * Decodes the image only after its header shows it fits in {@code maxPixels}, so a small
+     * file declaring huge dimensions cannot exhaust the heap.
+     */
+    private BufferedImage readImage(ByteBuffer data, String mediaType) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteBufferInputStream(data))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                logger.warn("Unsupported image format: " + mediaType);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    logger.warn("Image is too large for thumbnails: " + pixels + " pixels");
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, double scale, boolean opaque) {
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage target = new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private String getVariantExtension(String mediaType) {
+        return isJpeg(mediaType) ? "jpg" : "png";
+    }
+
+    private boolean isJpeg(String mediaType) {
+        return Objects.equals(mediaType, "image/jpeg");
+    }
+}
@@ -2,25 +2,27 @@ package ru.hogwarts.school.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.CursorPageDTO;
 import ru.hogwarts.school.dto.FacultyCreateDTO;
 import ru.hogwarts.school.dto.FacultyDetailDTO;
 import ru.hogwarts.school.dto.FacultyNotDetailDTO;
 import ru.hogwarts.school.dto.StudentDetailDTO;
 import ru.hogwarts.school.dto.mapper.FacultyDTOMapper;
 import ru.hogwarts.school.dto.mapper.StudentDTOMapper;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
 import ru.hogwarts.school.exception.BadDataException;
 import ru.hogwarts.school.exception.NotFoundResourceException;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.pagination.Cursors;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
 
 @Service
 public class FacultyService {
@@ -29,40 +31,32 @@ public class FacultyService {
     private final StudentRepository studentRepository;
     private final FacultyDTOMapper facultyDTOMapper;
     private final StudentDTOMapper studentDTOMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository, FacultyDTOMapper facultyDTOMapper, StudentDTOMapper studentDTOMapper) {
+    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository, FacultyDTOMapper facultyDTOMapper, StudentDTOMapper studentDTOMapper, ApplicationEventPublisher eventPublisher) {
         this.facultyRepository = facultyRepository;
         this.studentRepository = studentRepository;
         this.facultyDTOMapper = facultyDTOMapper;
         this.studentDTOMapper = studentDTOMapper;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Transactional
     public FacultyDetailDTO createFaculty(FacultyCreateDTO facultyInput) {
         logger.info("createFaculty method is called");
 
         Faculty faculty = new Faculty();
         faculty.setName(facultyInput.getName());
         faculty.setColor(facultyInput.getColor());
-        Set<Long> studentsId = facultyInput.getStudents();
-        if (studentsId != null) {
-            for (Long id : studentsId) {
-                Student student = studentRepository.findById(id).orElse(null);
-                if (student == null) {
-                    String message = "Student by id=" + id + " not found";
-                    logger.error(message);
-                    throw new BadDataException(message);
-                }
-                Faculty oldFaculty = student.getFaculty();
-                if (oldFaculty != null) {
-                    oldFaculty.removeStudent(student);
-                }
-                faculty.addStudent(student);
-            }
-        }
+        Set<Long> studentsId = getStudentsId(facultyInput);
+        List<StudentDetailDTO> joining = findStudents(studentsId);
         faculty = facultyRepository.save(faculty);
-        return facultyDTOMapper.toDetailDTO(faculty);
+        moveStudents(faculty, joining, Collections.emptyList());
+        eventPublisher.publishEvent(new FacultyChangedEvent(null, facultyDTOMapper.toNotDetailDTO(faculty)));
+        return facultyDTOMapper.toDetailDTO(faculty, studentsId);
     }
 
+    @Transactional(readOnly = true)
     public FacultyDetailDTO getFacultyById(Long id) {
         logger.info("getFacultyById method is called");
 
@@ -72,18 +66,22 @@ public class FacultyService {
                     logger.error(message);
                     return new NotFoundResourceException(message);
                 });
-        return facultyDTOMapper.toDetailDTO(faculty);
+        return facultyDTOMapper.toDetailDTO(faculty, studentRepository.findIdsByFacultyId(faculty.getId()));
     }
 
-    public Collection<FacultyNotDetailDTO> getAllFaculties() {
+    @Transactional(readOnly = true)
+    public CursorPageDTO<FacultyNotDetailDTO> getAllFaculties(String cursor, Integer limit) {
         logger.info("getAllFaculties method is called");
 
-        return facultyRepository.findAll()
-                .stream()
-                .map(facultyDTOMapper::toNotDetailDTO)
-                .collect(Collectors.toList());
+        List<Faculty> faculties = facultyRepository.findByIdGreaterThanOrderById(Cursors.decode(cursor), Cursors.pageable(limit));
+        return Cursors.page(faculties, limit, Faculty::getId, facultyDTOMapper::toNotDetailDTO);
     }
 
+    /**
+     * Only the students whose membership changes are written, with one bulk update for those
+     * leaving and one for those joining.
+     */
+    @Transactional
     public FacultyDetailDTO updateFaculty(Long id, FacultyCreateDTO facultyInput) {
         logger.info("updateFaculty method is called");
 
@@ -93,38 +91,37 @@ public class FacultyService {
                     logger.error(message);
                     return new NotFoundResourceException(message);
                 });
+        FacultyNotDetailDTO facultyBefore = facultyDTOMapper.toNotDetailDTO(faculty);
         faculty.setName(facultyInput.getName());
         faculty.setColor(facultyInput.getColor());
 
-        Set<Long> newStudentsId = facultyInput.getStudents();
-        Set<Student> oldStudents = faculty.getStudents();
-        if (newStudentsId == null) {
-            newStudentsId = Collections.emptySet();
-        }
-        if (oldStudents == null) {
-            oldStudents = Collections.emptySet();
-        }
-        for (Student oldStudent : Set.copyOf(oldStudents)) {
-            faculty.removeStudent(oldStudent);
-        }
-        for (Long i : newStudentsId) {
-            Student student = studentRepository.findById(i).orElse(null);
-            if (student == null) {
-                String message = "Student by id=" + id + " not found";
-                logger.error(message);
-                throw new BadDataException(message);
+        Set<Long> newStudentsId = getStudentsId(facultyInput);
+        Set<Long> oldStudentsId = new HashSet<>();
+        List<StudentDetailDTO> leaving = new ArrayList<>();
+        for (StudentDetailDTO member : studentRepository.findDetailsByFacultyId(id)) {
+            oldStudentsId.add(member.getId());
+            if (!newStudentsId.contains(member.getId())) {
+                leaving.add(member);
             }
-            Faculty oldFaculty = student.getFaculty();
-            if (oldFaculty != null) {
-                oldFaculty.removeStudent(student);
-            }
-            faculty.addStudent(student);
         }
+        Set<Long> joiningId = new HashSet<>(newStudentsId);
+        joiningId.removeAll(oldStudentsId);
+        List<StudentDetailDTO> joining = findStudents(joiningId);
 
         faculty = facultyRepository.save(faculty);
-        return facultyDTOMapper.toDetailDTO(faculty);
+        moveStudents(faculty, joining, leaving);
+        FacultyNotDetailDTO facultyAfter = facultyDTOMapper.toNotDetailDTO(faculty);
+        if (!facultyAfter.equals(facultyBefore)) {
+            eventPublisher.publishEvent(new FacultyChangedEvent(facultyBefore, facultyAfter));
+        }
+        return facultyDTOMapper.toDetailDTO(faculty, newStudentsId);
     }
 
+    /**
+     * Detaches all members with one bulk update and deletes the faculty without reading the
+     * members. Listeners learn of the detached members from the faculty's removal event.
+     */
+    @Transactional
     public FacultyDetailDTO removeFaculty(Long id) {
         logger.info("removeFaculty method is called");
 
@@ -134,46 +131,89 @@ public class FacultyService {
                     logger.error(message);
                     return new NotFoundResourceException(message);
                 });
-        if (faculty.getStudents() != null) {
-            for (Student student : Set.copyOf(faculty.getStudents())) {
-                faculty.removeStudent(student);
-            }
-        }
+        FacultyNotDetailDTO removed = facultyDTOMapper.toNotDetailDTO(faculty);
+        studentRepository.detachAllFromFaculty(id);
         facultyRepository.delete(faculty);
-        return facultyDTOMapper.toDetailDTO(faculty);
+        eventPublisher.publishEvent(new FacultyChangedEvent(removed, null));
+        return facultyDTOMapper.toDetailDTO(faculty, Collections.emptySet());
     }
 
-    public Collection<FacultyNotDetailDTO> getFacultiesByColor(String color) {
+    @Transactional(readOnly = true)
+    public CursorPageDTO<FacultyNotDetailDTO> getFacultiesByColor(String color, String cursor, Integer limit) {
         logger.info("getFacultiesByColor method is called");
 
-        return facultyRepository.findByColorIgnoreCase(color)
-                .stream()
-                .map(facultyDTOMapper::toNotDetailDTO)
-                .collect(Collectors.toList());
+        List<Faculty> faculties = facultyRepository.findByColorIgnoreCaseAndIdGreaterThanOrderById(color, Cursors.decode(cursor), Cursors.pageable(limit));
+        return Cursors.page(faculties, limit, Faculty::getId, facultyDTOMapper::toNotDetailDTO);
     }
 
-    public Collection<FacultyNotDetailDTO> getFacultiesByName(String name) {
+    @Transactional(readOnly = true)
+    public CursorPageDTO<FacultyNotDetailDTO> getFacultiesByName(String name, String cursor, Integer limit) {
         logger.info("getFacultiesByName method is called");
 
-        return facultyRepository.findByNameIgnoreCase(name)
-                .stream()
-                .map(facultyDTOMapper::toNotDetailDTO)
-                .collect(Collectors.toList());
+        List<Faculty> faculties = facultyRepository.findByNameIgnoreCaseAndIdGreaterThanOrderById(name, Cursors.decode(cursor), Cursors.pageable(limit));
+        return Cursors.page(faculties, limit, Faculty::getId, facultyDTOMapper::toNotDetailDTO);
     }
 
-    public Collection<StudentDetailDTO> getFacultyStudentsById(Long id) {
+    @Transactional(readOnly = true)
+    public CursorPageDTO<StudentDetailDTO> getFacultyStudentsById(Long id, String cursor, Integer limit) {
         logger.info("getFacultyStudentsById method is called");
 
-        Faculty faculty = facultyRepository.findById(id)
-                .orElseThrow(() -> {
-                    String message = "Faculty not found";
-                    logger.error(message);
-                    return new NotFoundResourceException(message);
-                });
-        return faculty.getStudents()
-                .stream()
-                .map(studentDTOMapper::toDetailDTO)
-                .collect(Collectors.toList());
+        if (!facultyRepository.existsById(id)) {
+            String message = "Faculty not found";
+            logger.error(message);
+            throw new NotFoundResourceException(message);
+        }
+        List<Student> students = studentRepository.findByFacultyIdAndIdGreaterThanOrderById(id, Cursors.decode(cursor), Cursors.pageable(limit));
+        return Cursors.page(students, limit, Student::getId, studentDTOMapper::toDetailDTO);
+    }
+
+    private Set<Long> getStudentsId(FacultyCreateDTO facultyInput) {
+        return facultyInput.getStudents() == null ? Collections.emptySet() : facultyInput.getStudents();
+    }
+
+    private List<StudentDetailDTO> findStudents(Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<StudentDetailDTO> students = new ArrayList<>();
+        Set<Long> missing = new HashSet<>(ids);
+        for (Student student : studentRepository.findAllById(ids)) {
+            students.add(studentDTOMapper.toDetailDTO(student));
+            missing.remove(student.getId());
+        }
+        if (!missing.isEmpty()) {
+            String message = "Student by id=" + missing.iterator().next() + " not found";
+            logger.error(message);
+            throw new BadDataException(message);
+        }
+        return students;
+    }
+
+    /**
+     * Applies the membership changes with bulk updates, which bypass the persistence context,
+     * and publishes a {@link StudentChangedEvent} for every student moved.
+     */
+    private void moveStudents(Faculty faculty, List<StudentDetailDTO> joining, List<StudentDetailDTO> leaving) {
+        if (!leaving.isEmpty()) {
+            studentRepository.clearFaculty(faculty.getId(), getIds(leaving));
+        }
+        if (!joining.isEmpty()) {
+            studentRepository.updateFaculty(faculty, getIds(joining));
+        }
+        for (StudentDetailDTO student : leaving) {
+            eventPublisher.publishEvent(new StudentChangedEvent(student,
+                    new StudentDetailDTO(student.getId(), student.getName(), student.getAge(), null)));
+        }
+        for (StudentDetailDTO student : joining) {
+            eventPublisher.publishEvent(new StudentChangedEvent(student,
+                    new StudentDetailDTO(student.getId(), student.getName(), student.getAge(), faculty.getId())));
+        }
+    }
+
+    private List<Long> getIds(List<StudentDetailDTO> students) {
+        List<Long> ids = new ArrayList<>(students.size());
+        students.forEach(student -> ids.add(student.getId()));
+        return ids;
     }
 
     public String getLongestName() {
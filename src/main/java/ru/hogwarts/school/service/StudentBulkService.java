@@ -0,0 +1,215 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.cache.FacultyStudentsCache;
+import ru.hogwarts.school.dto.StudentBulkResultDTO;
+import ru.hogwarts.school.dto.StudentBulkResultDTO.Status;
+import ru.hogwarts.school.dto.StudentCreateDTO;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.dto.mapper.StudentDTOMapper;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.exception.BadDataException;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Creates and updates students in bulk. Faculties and existing students are resolved with one
+ * query each; rows are written as JDBC batches of {@code hibernate.jdbc.batch_size}, and the
+ * persistence context is flushed and cleared every {@code students.bulk.flush-size} items.
+ * Memberships are set on the student side only, so the cached {@code Faculty.students} of every
+ * faculty touched is evicted after commit.
+ */
+@Service
+public class StudentBulkService {
+    private final Logger logger = LoggerFactory.getLogger(StudentBulkService.class);
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final StudentDTOMapper studentDTOMapper;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FacultyStudentsCache facultyStudentsCache;
+    private final int flushSize;
+    private final int maxItems;
+
+    public StudentBulkService(StudentRepository studentRepository,
+                              FacultyRepository facultyRepository,
+                              StudentDTOMapper studentDTOMapper,
+                              EntityManager entityManager,
+                              ApplicationEventPublisher eventPublisher,
+                              FacultyStudentsCache facultyStudentsCache,
+                              @Value("${students.bulk.flush-size:500}") int flushSize,
+                              @Value("${students.bulk.max-items:10000}") int maxItems) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.studentDTOMapper = studentDTOMapper;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.facultyStudentsCache = facultyStudentsCache;
+        this.flushSize = flushSize;
+        this.maxItems = maxItems;
+    }
+
+    @Transactional
+    public List<StudentBulkResultDTO> createStudents(List<StudentCreateDTO> inputs) {
+        logger.info("createStudents method is called");
+
+        checkSize(inputs);
+        Set<Long> faculties = findFacultyIds(inputs.stream().filter(Objects::nonNull).map(StudentCreateDTO::getFaculty));
+
+        List<StudentBulkResultDTO> results = new ArrayList<>(inputs.size());
+        Map<StudentBulkResultDTO, Student> pending = new LinkedHashMap<>();
+        Set<Long> touchedFaculties = new HashSet<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            StudentCreateDTO input = inputs.get(i);
+            if (input == null) {
+                results.add(new StudentBulkResultDTO(i, Status.INVALID, null));
+                continue;
+            }
+            if (input.getFaculty() != null && !faculties.contains(input.getFaculty())) {
+                results.add(new StudentBulkResultDTO(i, Status.FACULTY_NOT_FOUND, null));
+                continue;
+            }
+
+            Student student = new Student();
+            student.setName(input.getName());
+            student.setAge(input.getAge());
+            student.setFaculty(getFacultyReference(input.getFaculty()));
+            if (input.getFaculty() != null) {
+                touchedFaculties.add(input.getFaculty());
+            }
+            entityManager.persist(student);
+            StudentBulkResultDTO result = new StudentBulkResultDTO(i, Status.CREATED, null);
+            results.add(result);
+            pending.put(result, student);
+
+            if (pending.size() == flushSize) {
+                flush(pending, Collections.emptyMap());
+            }
+        }
+        flush(pending, Collections.emptyMap());
+        facultyStudentsCache.evictAfterCommit(touchedFaculties);
+        return results;
+    }
+
+    /**
+     * Works through the inputs in chunks of {@code students.bulk.flush-size}: the students of a
+     * chunk are loaded with one query, changed, flushed and cleared before the next chunk is read.
+     */
+    @Transactional
+    public List<StudentBulkResultDTO> updateStudents(List<StudentDetailDTO> inputs) {
+        logger.info("updateStudents method is called");
+
+        checkSize(inputs);
+        Set<Long> faculties = findFacultyIds(inputs.stream().filter(Objects::nonNull).map(StudentDetailDTO::getFaculty));
+
+        List<StudentBulkResultDTO> results = new ArrayList<>(inputs.size());
+        Set<Long> touchedFaculties = new HashSet<>();
+        for (int from = 0; from < inputs.size(); from += flushSize) {
+            updateChunk(inputs, from, Math.min(from + flushSize, inputs.size()), faculties, results, touchedFaculties);
+        }
+        facultyStudentsCache.evictAfterCommit(touchedFaculties);
+        return results;
+    }
+
+    private void updateChunk(List<StudentDetailDTO> inputs, int from, int to, Set<Long> faculties,
+                             List<StudentBulkResultDTO> results, Set<Long> touchedFaculties) {
+        List<StudentDetailDTO> chunk = inputs.subList(from, to);
+        Set<Long> ids = chunk.stream()
+                .filter(Objects::nonNull)
+                .map(StudentDetailDTO::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Student> students = ids.isEmpty() ? Collections.emptyMap() : studentRepository.findAllById(ids)
+                .stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+
+        Map<StudentBulkResultDTO, Student> pending = new LinkedHashMap<>();
+        Map<Long, StudentDetailDTO> before = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            StudentDetailDTO input = inputs.get(i);
+            if (input == null || input.getId() == null) {
+                results.add(new StudentBulkResultDTO(i, Status.INVALID, null));
+                continue;
+            }
+            Student student = students.get(input.getId());
+            if (student == null) {
+                results.add(new StudentBulkResultDTO(i, Status.STUDENT_NOT_FOUND, null));
+                continue;
+            }
+            if (input.getFaculty() != null && !faculties.contains(input.getFaculty())) {
+                results.add(new StudentBulkResultDTO(i, Status.FACULTY_NOT_FOUND, null));
+                continue;
+            }
+
+            before.putIfAbsent(student.getId(), studentDTOMapper.toDetailDTO(student));
+            student.setName(input.getName());
+            student.setAge(input.getAge());
+            Long facultyId = student.getFaculty() != null ? student.getFaculty().getId() : null;
+            if (!Objects.equals(facultyId, input.getFaculty())) {
+                student.setFaculty(getFacultyReference(input.getFaculty()));
+                if (facultyId != null) {
+                    touchedFaculties.add(facultyId);
+                }
+                if (input.getFaculty() != null) {
+                    touchedFaculties.add(input.getFaculty());
+                }
+            }
+            StudentBulkResultDTO result = new StudentBulkResultDTO(i, Status.UPDATED, null);
+            results.add(result);
+            pending.put(result, student);
+        }
+        flush(pending, before);
+    }
+
+    /**
+     * Writes the pending rows, fills in their results and drops them from the persistence context.
+     * Change events are delivered once the surrounding transaction commits.
+     */
+    private void flush(Map<StudentBulkResultDTO, Student> pending, Map<Long, StudentDetailDTO> before) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        pending.forEach((result, student) -> result.setStudent(studentDTOMapper.toDetailDTO(student)));
+        // a student listed twice in one request is still a single change
+        for (Student student : new LinkedHashSet<>(pending.values())) {
+            eventPublisher.publishEvent(new StudentChangedEvent(before.get(student.getId()), studentDTOMapper.toDetailDTO(student)));
+        }
+        entityManager.clear();
+        pending.clear();
+    }
+
+    private Faculty getFacultyReference(Long facultyId) {
+        return facultyId != null ? entityManager.getReference(Faculty.class, facultyId) : null;
+    }
+
+    private Set<Long> findFacultyIds(Stream<Long> facultyIds) {
+        Set<Long> ids = facultyIds.filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        return facultyRepository.findAllById(ids)
+                .stream()
+                .map(Faculty::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private void checkSize(List<?> inputs) {
+        if (inputs.size() > maxItems) {
+            throw new BadDataException("At most " + maxItems + " students per request");
+        }
+    }
+}
@@ -2,39 +2,77 @@ package ru.hogwarts.school.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.cache.FacultyStudentsCache;
+import ru.hogwarts.school.dto.AgeStatsDTO;
+import ru.hogwarts.school.dto.CursorPageDTO;
 import ru.hogwarts.school.dto.FacultyDetailDTO;
 import ru.hogwarts.school.dto.StudentCreateDTO;
 import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.dto.StudentMatchDTO;
 import ru.hogwarts.school.dto.mapper.FacultyDTOMapper;
 import ru.hogwarts.school.dto.mapper.StudentDTOMapper;
+import ru.hogwarts.school.event.StudentChangedEvent;
 import ru.hogwarts.school.exception.BadDataException;
 import ru.hogwarts.school.exception.NotFoundResourceException;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.pagination.Cursors;
+import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.search.StudentNameIndex;
+import ru.hogwarts.school.statistics.AgeHistogram;
+import ru.hogwarts.school.statistics.StudentStatistics;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class StudentService {
+    public static final int SEARCH_DEFAULT_LIMIT = 10;
+    public static final int SEARCH_MAX_LIMIT = 100;
+
     private final Logger logger = LoggerFactory.getLogger(StudentService.class);
     private final StudentRepository studentRepository;
     private final FacultyRepository facultyRepository;
+    private final AvatarRepository avatarRepository;
     private final StudentDTOMapper studentDTOMapper;
     private final FacultyDTOMapper facultyDTOMapper;
+    private final ObjectMapper objectMapper;
+    private final StudentStatistics studentStatistics;
+    private final StudentNameIndex studentNameIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FacultyStudentsCache facultyStudentsCache;
 
-    public StudentService(StudentRepository studentRepository, FacultyRepository facultyRepository, StudentDTOMapper studentDTOMapper, FacultyDTOMapper facultyDTOMapper) {
+    public StudentService(StudentRepository studentRepository, FacultyRepository facultyRepository, AvatarRepository avatarRepository, StudentDTOMapper studentDTOMapper, FacultyDTOMapper facultyDTOMapper, ObjectMapper objectMapper, StudentStatistics studentStatistics, StudentNameIndex studentNameIndex, ApplicationEventPublisher eventPublisher, FacultyStudentsCache facultyStudentsCache) {
         this.studentRepository = studentRepository;
         this.facultyRepository = facultyRepository;
+        this.avatarRepository = avatarRepository;
         this.studentDTOMapper = studentDTOMapper;
         this.facultyDTOMapper = facultyDTOMapper;
+        this.objectMapper = objectMapper;
+        this.studentStatistics = studentStatistics;
+        this.studentNameIndex = studentNameIndex;
+        this.eventPublisher = eventPublisher;
+        this.facultyStudentsCache = facultyStudentsCache;
     }
 
+    @Transactional
     public StudentDetailDTO createStudent(StudentCreateDTO studentInput) {
         logger.info("createStudent method is called");
 
@@ -50,11 +88,15 @@ public class StudentService {
                         return new BadDataException(message);
                     });
             faculty.addStudent(student);
+            facultyStudentsCache.evictAfterCommit(List.of(faculty.getId()));
         }
         student = studentRepository.save(student);
-        return studentDTOMapper.toDetailDTO(student);
+        StudentDetailDTO created = studentDTOMapper.toDetailDTO(student);
+        eventPublisher.publishEvent(new StudentChangedEvent(null, created));
+        return created;
     }
 
+    @Transactional(readOnly = true)
     public StudentDetailDTO getStudentById(Long id) {
         logger.info("getStudentById method is called");
 
@@ -67,15 +109,39 @@ public class StudentService {
         return studentDTOMapper.toDetailDTO(student);
     }
 
-    public Collection<StudentDetailDTO> getAllStudents() {
+    @Transactional(readOnly = true)
+    public CursorPageDTO<StudentDetailDTO> getAllStudents(String cursor, Integer limit) {
         logger.info("getAllStudents method is called");
 
-        return studentRepository.findAll()
-                .stream()
-                .map(studentDTOMapper::toDetailDTO)
-                .collect(Collectors.toList());
+        List<Student> students = studentRepository.findByIdGreaterThanOrderById(Cursors.decode(cursor), Cursors.pageable(limit));
+        return Cursors.page(students, limit, Student::getId, studentDTOMapper::toDetailDTO);
+    }
+
+    /**
+     * Writes every student as one JSON object per line. Rows come straight from a
+     * database cursor as DTOs, so nothing accumulates in the persistence context.
+     */
+    @Transactional(readOnly = true)
+    public void exportStudents(OutputStream outputStream) throws IOException {
+        logger.info("exportStudents method is called");
+
+        OutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+        try (Stream<StudentDetailDTO> students = studentRepository.streamAllDetails()) {
+            students.forEach(student -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(student));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
     }
 
+    @Transactional
     public StudentDetailDTO updateStudent(Long id, StudentCreateDTO studentInput) {
         logger.info("updateStudent method is called");
 
@@ -85,23 +151,32 @@ public class StudentService {
                     logger.error(message);
                     return new NotFoundResourceException(message);
                 });
+        StudentDetailDTO before = studentDTOMapper.toDetailDTO(student);
         student.setName(studentInput.getName());
         student.setAge(studentInput.getAge());
         Faculty faculty = student.getFaculty();
         Long facultyNewId = studentInput.getFaculty();
         Faculty facultyNew = (facultyNewId != null) ? facultyRepository.findById(facultyNewId).orElse(null) : null;
-        if (!Objects.equals(faculty, facultyNew)) {
+        // compared by id: the current faculty may be an uninitialized proxy
+        if (!Objects.equals(getId(faculty), getId(facultyNew))) {
             if (faculty != null) {
                 faculty.removeStudent(student);
             }
             if (facultyNew != null) {
                 facultyNew.addStudent(student);
             }
+            facultyStudentsCache.evictAfterCommit(Arrays.asList(getId(faculty), getId(facultyNew)));
         }
         student = studentRepository.save(student);
-        return studentDTOMapper.toDetailDTO(student);
+        StudentDetailDTO updated = studentDTOMapper.toDetailDTO(student);
+        eventPublisher.publishEvent(new StudentChangedEvent(before, updated));
+        return updated;
     }
 
+    /**
+     * Removes the student together with its avatar row; the avatar file is left to the reconciler.
+     */
+    @Transactional
     public StudentDetailDTO removeStudent(Long id) {
         logger.info("removeStudent method is called");
 
@@ -114,30 +189,37 @@ public class StudentService {
         Faculty faculty = student.getFaculty();
         if (faculty != null) {
             faculty.removeStudent(student);
+            facultyStudentsCache.evictAfterCommit(List.of(faculty.getId()));
         }
+        StudentDetailDTO removed = studentDTOMapper.toDetailDTO(student);
+        avatarRepository.deleteByStudentId(id);
         studentRepository.delete(student);
-        return studentDTOMapper.toDetailDTO(student);
+        eventPublisher.publishEvent(new StudentChangedEvent(removed, null));
+        return removed;
     }
 
-    public Collection<StudentDetailDTO> getStudentsByAge(Integer age) {
+    private static Long getId(Faculty faculty) {
+        return faculty != null ? faculty.getId() : null;
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDTO<StudentDetailDTO> getStudentsByAge(Integer age, String cursor, Integer limit) {
         logger.info("getStudentsByAge method is called");
 
-        return studentRepository.findByAge(age)
-                .stream()
-                .map(studentDTOMapper::toDetailDTO)
-                .collect(Collectors.toList());
+        List<Student> students = studentRepository.findByAgeAndIdGreaterThanOrderById(age, Cursors.decode(cursor), Cursors.pageable(limit));
+        return Cursors.page(students, limit, Student::getId, studentDTOMapper::toDetailDTO);
     }
 
-    public Collection<StudentDetailDTO> getStudentsBetweenAge(Integer min, Integer max) {
+    @Transactional(readOnly = true)
+    public CursorPageDTO<StudentDetailDTO> getStudentsBetweenAge(Integer min, Integer max, String cursor, Integer limit) {
         logger.info("getStudentsBetweenAge method is called");
 
-        return studentRepository.findByAgeBetween(min, max)
-                .stream()
-                .map(studentDTOMapper::toDetailDTO)
-                .collect(Collectors.toList());
+        List<Student> students = studentRepository.findByAgeBetweenAndIdGreaterThanOrderById(min, max, Cursors.decode(cursor), Cursors.pageable(limit));
+        return Cursors.page(students, limit, Student::getId, studentDTOMapper::toDetailDTO);
     }
 
 
+    @Transactional(readOnly = true)
     public FacultyDetailDTO getStudentFacultyById(Long id) {
         logger.info("getStudentFacultyById method is called");
 
@@ -147,22 +229,59 @@ public class StudentService {
         if (faculty == null) {
             return null;
         }
-        return facultyDTOMapper.toDetailDTO(faculty);
+        return facultyDTOMapper.toDetailDTO(faculty, studentRepository.findIdsByFacultyId(faculty.getId()));
     }
 
 
     public Long getStudentCount() {
         logger.info("getStudentCount method is called");
 
-        return studentRepository.getCount();
+        return studentStatistics.getSnapshot().getStudents();
     }
 
     public Double getStudentAvgAge() {
         logger.info("getStudentAvgAge method is called");
 
-        return studentRepository.getAvgAge();
+        return studentStatistics.getSnapshot().getAvgAge();
+    }
+
+    /**
+     * Age distribution of one faculty, or of all students when {@code facultyId} is {@code null},
+     * with the histogram grouped into buckets of {@code bucket} years.
+     */
+    public AgeStatsDTO getAgeStats(Long facultyId, Integer bucket) {
+        logger.info("getAgeStats method is called");
+
+        if (bucket == null || bucket < 1) {
+            String message = "bucket must be positive";
+            logger.error(message);
+            throw new BadDataException(message);
+        }
+        StudentStatistics.Snapshot snapshot = studentStatistics.getSnapshot();
+        AgeHistogram histogram = snapshot.getOverall();
+        if (facultyId != null) {
+            if (!snapshot.hasFaculty(facultyId) && !facultyRepository.existsById(facultyId)) {
+                String message = "Faculty not found";
+                logger.error(message);
+                throw new NotFoundResourceException(message);
+            }
+            histogram = snapshot.getFaculty(facultyId);
+        }
+        return new AgeStatsDTO(
+                facultyId,
+                histogram.getStudents(),
+                histogram.getAvgAge(),
+                histogram.getMinAge(),
+                histogram.getMaxAge(),
+                histogram.getPercentile(0.5),
+                histogram.getPercentile(0.9),
+                histogram.getPercentile(0.99),
+                bucket,
+                histogram.getBuckets(bucket)
+        );
     }
 
+    @Transactional(readOnly = true)
     public List<StudentDetailDTO> getLastStudents() {
         logger.info("getLastStudents method is called");
 
@@ -172,23 +291,74 @@ public class StudentService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Students whose name starts with {@code prefix}, ignoring case, ordered by name. Served from
+     * {@link StudentNameIndex}; the database is queried only until the index is first built.
+     */
+    public List<StudentDetailDTO> searchStudentsByName(String prefix, Integer limit) {
+        logger.info("searchStudentsByName method is called");
+
+        if (prefix == null || prefix.isEmpty()) {
+            String message = "prefix must not be empty";
+            logger.error(message);
+            throw new BadDataException(message);
+        }
+        if (limit != null && limit < 1) {
+            String message = "limit must be positive";
+            logger.error(message);
+            throw new BadDataException(message);
+        }
+        int size = limit != null ? Math.min(limit, SEARCH_MAX_LIMIT) : SEARCH_DEFAULT_LIMIT;
+        return findByNamePrefix(prefix, PageRequest.of(0, size, Sort.by("name", "id")));
+    }
+
+    /**
+     * Students whose name contains {@code query} or a close misspelling of it, best matches first.
+     */
+    public List<StudentMatchDTO> searchStudentsBySimilarName(String query, Integer limit) {
+        logger.info("searchStudentsBySimilarName method is called");
+
+        if (query == null || query.isBlank()) {
+            String message = "query must not be blank";
+            logger.error(message);
+            throw new BadDataException(message);
+        }
+        if (limit != null && limit < 1) {
+            String message = "limit must be positive";
+            logger.error(message);
+            throw new BadDataException(message);
+        }
+        int size = limit != null ? Math.min(limit, SEARCH_MAX_LIMIT) : SEARCH_DEFAULT_LIMIT;
+        String pattern = "%" + query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return studentRepository.findSimilarByName(query, pattern, size)
+                .stream()
+                .map(studentDTOMapper::toMatchDTO)
+                .collect(Collectors.toList());
+    }
+
     public Collection<String> findNamesStartingWithA() {
-        // FIXME: bad practice
-        return studentRepository.findAll()
+        logger.info("findNamesStartingWithA method is called");
+
+        return findByNamePrefix("A", Pageable.unpaged())
                 .stream()
-                .parallel()
-                .map(s -> s.getName().toUpperCase())
-                .filter(s -> s.startsWith("A"))
+                .map(student -> student.getName().toUpperCase())
                 .collect(Collectors.toList());
     }
 
-    public Double getAvgAge() {
-        // FIXME: bad practice
-        return studentRepository.findAll()
+    private List<StudentDetailDTO> findByNamePrefix(String prefix, Pageable pageable) {
+        if (studentNameIndex.isReady()) {
+            return studentNameIndex.search(prefix, pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE);
+        }
+        return studentRepository.findByNameStartingWithIgnoreCase(prefix, pageable)
                 .stream()
-                .parallel()
-                .mapToDouble(Student::getAge)
-                .average()
-                .orElse(0);
+                .map(studentDTOMapper::toDetailDTO)
+                .collect(Collectors.toList());
+    }
+
+    public Double getAvgAge() {
+        logger.info("getAvgAge method is called");
+
+        Double avgAge = studentStatistics.getSnapshot().getAvgAge();
+        return avgAge != null ? avgAge : 0;
     }
 }
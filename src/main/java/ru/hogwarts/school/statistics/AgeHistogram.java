@@ -0,0 +1,146 @@
+package ru.hogwarts.school.statistics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable exact histogram of student ages: one bucket per distinct age, plus a counter for
+ * students without an age. Ages are small integers, so it stays a few hundred bytes and
+ * histograms of different faculties merge by adding counts.
+ */
+public final class AgeHistogram {
+    public static final AgeHistogram EMPTY = new AgeHistogram(new int[0], new long[0], 0, 0, 0);
+
+    private final int[] ages;
+    private final long[] counts;
+    private final long total;
+    private final long sum;
+    private final long unknown;
+
+    private AgeHistogram(int[] ages, long[] counts, long total, long sum, long unknown) {
+        this.ages = ages;
+        this.counts = counts;
+        this.total = total;
+        this.sum = sum;
+        this.unknown = unknown;
+    }
+
+    public static AgeHistogram of(Map<Integer, Long> counts, long unknown) {
+        int[] ages = counts.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        long[] values = new long[ages.length];
+        long total = 0;
+        long sum = 0;
+        for (int i = 0; i < ages.length; i++) {
+            values[i] = counts.get(ages[i]);
+            total += values[i];
+            sum += ages[i] * values[i];
+        }
+        return new AgeHistogram(ages, values, total, sum, unknown);
+    }
+
+    public AgeHistogram plus(Integer age) {
+        return add(age, 1);
+    }
+
+    public AgeHistogram minus(Integer age) {
+        return add(age, -1);
+    }
+
+    public AgeHistogram merge(AgeHistogram other) {
+        AgeHistogram merged = this;
+        for (int i = 0; i < other.ages.length; i++) {
+            merged = merged.add(other.ages[i], other.counts[i]);
+        }
+        return new AgeHistogram(merged.ages, merged.counts, merged.total, merged.sum, unknown + other.unknown);
+    }
+
+    private AgeHistogram add(Integer age, long delta) {
+        if (age == null) {
+            return new AgeHistogram(ages, counts, total, sum, Math.max(0, unknown + delta));
+        }
+        int index = Arrays.binarySearch(ages, age);
+        if (index >= 0) {
+            long count = counts[index] + delta;
+            if (count > 0) {
+                long[] newCounts = counts.clone();
+                newCounts[index] = count;
+                return new AgeHistogram(ages, newCounts, total + delta, sum + age * delta, unknown);
+            }
+            // the bucket empties; a count that would go negative means the histogram drifted
+            int[] newAges = new int[ages.length - 1];
+            long[] newCounts = new long[ages.length - 1];
+            System.arraycopy(ages, 0, newAges, 0, index);
+            System.arraycopy(ages, index + 1, newAges, index, ages.length - index - 1);
+            System.arraycopy(counts, 0, newCounts, 0, index);
+            System.arraycopy(counts, index + 1, newCounts, index, ages.length - index - 1);
+            return new AgeHistogram(newAges, newCounts, total - counts[index], sum - (long) age * counts[index], unknown);
+        }
+        if (delta <= 0) {
+            return this;
+        }
+        int insert = -index - 1;
+        int[] newAges = new int[ages.length + 1];
+        long[] newCounts = new long[ages.length + 1];
+        System.arraycopy(ages, 0, newAges, 0, insert);
+        System.arraycopy(ages, insert, newAges, insert + 1, ages.length - insert);
+        System.arraycopy(counts, 0, newCounts, 0, insert);
+        System.arraycopy(counts, insert, newCounts, insert + 1, ages.length - insert);
+        newAges[insert] = age;
+        newCounts[insert] = delta;
+        return new AgeHistogram(newAges, newCounts, total + delta, sum + age * delta, unknown);
+    }
+
+    /**
+     * Number of students, including those without an age.
+     */
+    public long getStudents() {
+        return total + unknown;
+    }
+
+    public Double getAvgAge() {
+        return total > 0 ? (double) sum / total : null;
+    }
+
+    public Integer getMinAge() {
+        return ages.length > 0 ? ages[0] : null;
+    }
+
+    public Integer getMaxAge() {
+        return ages.length > 0 ? ages[ages.length - 1] : null;
+    }
+
+    /**
+     * Nearest-rank percentile: the smallest age such that at least {@code quantile} of the
+     * students with an age are that old or younger.
+     */
+    public Integer getPercentile(double quantile) {
+        if (total == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < ages.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return ages[i];
+            }
+        }
+        return ages[ages.length - 1];
+    }
+
+    /**
+     * Counts per bucket of {@code width} years, keyed by the lower bound of the bucket.
+     */
+    public Map<Integer, Long> getBuckets(int width) {
+        Map<Integer, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < ages.length; i++) {
+            buckets.merge(Math.floorDiv(ages[i], width) * width, counts[i], Long::sum);
+        }
+        return buckets;
+    }
+
+    public boolean isEmpty() {
+        return total == 0 && unknown == 0;
+    }
+}
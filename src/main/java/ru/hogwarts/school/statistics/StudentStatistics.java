@@ -0,0 +1,195 @@
+package ru.hogwarts.school.statistics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.repository.projection.AgeCount;
+
+import java.util.*;
+
+/**
+ * Student counts and age histograms, overall and per faculty, kept in memory. They are loaded
+ * with one grouped query on first use, follow {@link StudentChangedEvent}s and faculty removals
+ * after commit, and are periodically replaced by a fresh load. A load that overlaps a write is
+ * retried, since it may or may not include it.
+ */
+@Component
+public class StudentStatistics {
+    private final Logger logger = LoggerFactory.getLogger(StudentStatistics.class);
+    private final StudentRepository studentRepository;
+    private final int loadAttempts;
+    private final Object loadLock = new Object();
+
+    // guarded by this
+    private long version;
+    private boolean loaded;
+
+    private volatile Snapshot snapshot;
+
+    public StudentStatistics(StudentRepository studentRepository,
+                             @Value("${students.statistics.load-attempts:3}") int loadAttempts) {
+        this.studentRepository = studentRepository;
+        this.loadAttempts = loadAttempts;
+    }
+
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (loadLock) {
+            if (snapshot == null) {
+                load(true);
+            }
+        }
+        return snapshot;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onStudentChanged(StudentChangedEvent event) {
+        version++;
+        if (!loaded) {
+            return;
+        }
+        StudentDetailDTO before = event.getBefore();
+        StudentDetailDTO after = event.getAfter();
+        AgeHistogram overall = snapshot.overall;
+        Map<Long, AgeHistogram> faculties = new HashMap<>(snapshot.faculties);
+        if (before != null) {
+            overall = overall.minus(before.getAge());
+            AgeHistogram faculty = faculties.getOrDefault(before.getFaculty(), AgeHistogram.EMPTY).minus(before.getAge());
+            if (faculty.isEmpty()) {
+                faculties.remove(before.getFaculty());
+            } else {
+                faculties.put(before.getFaculty(), faculty);
+            }
+        }
+        if (after != null) {
+            overall = overall.plus(after.getAge());
+            faculties.put(after.getFaculty(), faculties.getOrDefault(after.getFaculty(), AgeHistogram.EMPTY).plus(after.getAge()));
+        }
+        snapshot = new Snapshot(overall, faculties);
+    }
+
+    /**
+     * A removed faculty's members are left without a faculty, so its histogram joins the {@code null} one.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFacultyChanged(FacultyChangedEvent event) {
+        if (event.getAfter() != null || event.getBefore() == null) {
+            return;
+        }
+        version++;
+        if (!loaded) {
+            return;
+        }
+        Map<Long, AgeHistogram> faculties = new HashMap<>(snapshot.faculties);
+        AgeHistogram members = faculties.remove(event.getBefore().getId());
+        if (members == null) {
+            return;
+        }
+        faculties.put(null, faculties.getOrDefault(null, AgeHistogram.EMPTY).merge(members));
+        snapshot = new Snapshot(snapshot.overall, faculties);
+    }
+
+    @Scheduled(initialDelayString = "${students.statistics.reconcile-interval-ms:300000}",
+            fixedDelayString = "${students.statistics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        synchronized (loadLock) {
+            if (snapshot != null && !load(false)) {
+                logger.info("Student statistics reconciliation is skipped, students kept changing during the scan");
+            }
+        }
+    }
+
+    /**
+     * Replaces the statistics with the database state. When every attempt overlaps a write the
+     * last scan is kept only if {@code force} is set; the next reconciliation corrects it.
+     */
+    private boolean load(boolean force) {
+        for (int attempt = 1; attempt <= loadAttempts; attempt++) {
+            long start;
+            synchronized (this) {
+                start = version;
+            }
+            List<AgeCount> rows = studentRepository.countByFacultyAndAge();
+            synchronized (this) {
+                if (version == start || (force && attempt == loadAttempts)) {
+                    replace(rows);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void replace(List<AgeCount> rows) {
+        Map<Long, Map<Integer, Long>> counts = new HashMap<>();
+        Map<Long, Long> unknown = new HashMap<>();
+        for (AgeCount row : rows) {
+            counts.computeIfAbsent(row.getFaculty(), faculty -> new HashMap<>());
+            if (row.getAge() != null) {
+                counts.get(row.getFaculty()).put(row.getAge(), row.getStudents());
+            } else {
+                unknown.put(row.getFaculty(), row.getStudents());
+            }
+        }
+
+        AgeHistogram overall = AgeHistogram.EMPTY;
+        Map<Long, AgeHistogram> faculties = new HashMap<>();
+        for (Map.Entry<Long, Map<Integer, Long>> entry : counts.entrySet()) {
+            AgeHistogram faculty = AgeHistogram.of(entry.getValue(), unknown.getOrDefault(entry.getKey(), 0L));
+            faculties.put(entry.getKey(), faculty);
+            overall = overall.merge(faculty);
+        }
+
+        if (loaded && snapshot.getStudents() != overall.getStudents()) {
+            logger.warn("Student statistics drifted: " + snapshot.getStudents() + " students counted, " + overall.getStudents() + " stored");
+        }
+        loaded = true;
+        snapshot = new Snapshot(overall, faculties);
+    }
+
+    public static final class Snapshot {
+        private final AgeHistogram overall;
+        private final Map<Long, AgeHistogram> faculties;
+
+        private Snapshot(AgeHistogram overall, Map<Long, AgeHistogram> faculties) {
+            this.overall = overall;
+            this.faculties = Collections.unmodifiableMap(faculties);
+        }
+
+        public long getStudents() {
+            return overall.getStudents();
+        }
+
+        /**
+         * Mean over students with a known age, {@code null} when there are none, like {@code avg(age)}.
+         */
+        public Double getAvgAge() {
+            return overall.getAvgAge();
+        }
+
+        public AgeHistogram getOverall() {
+            return overall;
+        }
+
+        /**
+         * Histogram of the faculty's students; {@code null} key stands for students without a faculty.
+         */
+        public AgeHistogram getFaculty(Long facultyId) {
+            return faculties.getOrDefault(facultyId, AgeHistogram.EMPTY);
+        }
+
+        public boolean hasFaculty(Long facultyId) {
+            return faculties.containsKey(facultyId);
+        }
+    }
+}
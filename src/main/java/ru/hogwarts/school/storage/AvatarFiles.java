@@ -0,0 +1,147 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+public final class AvatarFiles {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 12;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private AvatarFiles() {
+    }
+
+    /**
+     * Streams {@code inputStream} into {@code target} through a fixed direct buffer,
+     * computing size, SHA-256 and the sniffed media type in the same pass. The file
+     * is synced to disk before returning.
+     */
+    public static StoredFile write(InputStream inputStream, Path target, String declaredMediaType, OpenOption... options) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        int headerLength = 0;
+        long size = 0;
+
+        try (ReadableByteChannel in = Channels.newChannel(inputStream);
+             FileChannel out = FileChannel.open(target, options)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                if (headerLength < HEADER_SIZE) {
+                    int n = Math.min(HEADER_SIZE - headerLength, buffer.remaining());
+                    buffer.duplicate().get(header, headerLength, n);
+                    headerLength += n;
+                }
+                size += buffer.remaining();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            out.force(true);
+        }
+
+        return new StoredFile(
+                target.toString(),
+                size,
+                toHex(digest.digest()),
+                detectMediaType(header, headerLength, declaredMediaType)
+        );
+    }
+
+    /**
+     * Reads {@code length} bytes at {@code offset} of {@code path} into a new direct buffer.
+     */
+    public static ByteBuffer read(Path path, long offset, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(length));
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, position);
+                if (n < 0) {
+                    break;
+                }
+                position += n;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Renames a fully written {@code source} over {@code target} in one step and makes
+     * the new directory entry durable, so a crash leaves either the old or the new file.
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, ATOMIC_MOVE, REPLACE_EXISTING);
+        try (FileChannel directory = FileChannel.open(target.getParent(), READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // not every platform can open a directory for syncing
+        }
+    }
+
+    public static String detectMediaType(byte[] header, int length, String declaredMediaType) {
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G')) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (startsWith(header, length, 'R', 'I', 'F', 'F') && length >= 12
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        if (startsWith(header, length, 'B', 'M')) {
+            return "image/bmp";
+        }
+        return declaredMediaType != null ? declaredMediaType : "application/octet-stream";
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
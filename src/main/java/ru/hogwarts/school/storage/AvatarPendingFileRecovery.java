@@ -0,0 +1,45 @@
+package ru.hogwarts.school.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.model.AvatarPendingFile;
+import ru.hogwarts.school.repository.AvatarPendingFileRepository;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Releases files of uploads that were stored but never linked to their avatar,
+ * e.g. because the process died between the write and the commit.
+ */
+@Component
+public class AvatarPendingFileRecovery {
+    private final Logger logger = LoggerFactory.getLogger(AvatarPendingFileRecovery.class);
+    private final AvatarPendingFileRepository avatarPendingFileRepository;
+    private final AvatarStorage avatarStorage;
+    private final long maxAgeMs;
+
+    public AvatarPendingFileRecovery(AvatarPendingFileRepository avatarPendingFileRepository,
+                                     AvatarStorage avatarStorage,
+                                     @Value("${avatars.pending.max-age-ms:600000}") long maxAgeMs) {
+        this.avatarPendingFileRepository = avatarPendingFileRepository;
+        this.avatarStorage = avatarStorage;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${avatars.pending.recovery-interval-ms:300000}")
+    public void recover() {
+        for (AvatarPendingFile pendingFile : avatarPendingFileRepository.findByCreatedAtBefore(Instant.now().minusMillis(maxAgeMs))) {
+            try {
+                avatarStorage.release(pendingFile.getFilePath(), pendingFile.getFileHash());
+                avatarPendingFileRepository.delete(pendingFile);
+                logger.info("Unlinked avatar file " + pendingFile.getFilePath() + " is released");
+            } catch (IOException | RuntimeException e) {
+                logger.error("Unlinked avatar file " + pendingFile.getFilePath() + " is not released", e);
+            }
+        }
+    }
+}
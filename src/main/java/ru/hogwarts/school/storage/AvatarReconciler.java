@@ -0,0 +1,367 @@
+package ru.hogwarts.school.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.projection.AvatarMetadata;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Walks the avatar directory and the avatar table a few keyset batches per run.
+ * Files no row points at are deleted once older than {@code avatars.reconciler.min-age-ms},
+ * rows whose file is gone are flagged with {@code file_missing}. Each run resumes
+ * where the previous one stopped and wraps around at the end; the file cursor is kept in
+ * {@value #CURSOR_FILE} so a restart does not begin the walk again. Batches of a run are
+ * spaced by scheduling the next one rather than by sleeping on the scheduler thread.
+ * Segment files are left to the segment compactor: the active one is still being appended to
+ * and none of them is referenced by its path alone.
+ */
+@Component
+@ConditionalOnProperty(name = "avatars.reconciler.enabled", havingValue = "true", matchIfMissing = true)
+public class AvatarReconciler implements MeterBinder {
+    private static final String TEMP_DIR = "tmp";
+    private static final String SEGMENTS_DIR = "segments";
+    private static final String CURSOR_FILE = ".reconciler-cursor";
+    private static final Pattern THUMBNAIL = Pattern.compile("(.+)_(\\d{1,5})\\.(png|jpg)");
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Logger logger = LoggerFactory.getLogger(AvatarReconciler.class);
+    private final AvatarRepository avatarRepository;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final TaskScheduler taskScheduler;
+    private final Path rootDir;
+    private final int batchSize;
+    private final int batchesPerRun;
+    private final long batchDelayMs;
+    private final long minAgeMs;
+
+    private Path fileCursor;
+    private boolean fileCursorLoaded;
+    private long rowCursor = 0;
+    private int batchesLeft;
+    private boolean filesDone;
+    private boolean rowsDone;
+
+    private final LongAdder filesScanned = new LongAdder();
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder orphansDeleted = new LongAdder();
+    private final LongAdder thumbnailsDeleted = new LongAdder();
+    private final LongAdder tempFilesDeleted = new LongAdder();
+    private final LongAdder rowsFlagged = new LongAdder();
+    private final LongAdder rowsRestored = new LongAdder();
+
+    public AvatarReconciler(AvatarRepository avatarRepository,
+                            AvatarThumbnailService avatarThumbnailService,
+                            TaskScheduler taskScheduler,
+                            @Value("${avatars.dir.path}") String avatarsDirPath,
+                            @Value("${avatars.reconciler.batch-size:500}") int batchSize,
+                            @Value("${avatars.reconciler.batches-per-run:10}") int batchesPerRun,
+                            @Value("${avatars.reconciler.batch-delay-ms:100}") long batchDelayMs,
+                            @Value("${avatars.reconciler.min-age-ms:3600000}") long minAgeMs) {
+        this.avatarRepository = avatarRepository;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.taskScheduler = taskScheduler;
+        this.rootDir = Path.of(avatarsDirPath);
+        this.batchSize = batchSize;
+        this.batchesPerRun = batchesPerRun;
+        this.batchDelayMs = batchDelayMs;
+        this.minAgeMs = minAgeMs;
+    }
+
+    @Scheduled(fixedDelayString = "${avatars.reconciler.interval-ms:60000}")
+    public synchronized void reconcile() {
+        if (batchesLeft > 0) {
+            return;
+        }
+        batchesLeft = batchesPerRun;
+        filesDone = false;
+        rowsDone = false;
+        runBatch();
+    }
+
+    private synchronized void runBatch() {
+        boolean more;
+        try {
+            more = reconcileBatch();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Avatar reconciliation batch failed", e);
+            more = false;
+        }
+        if (more && --batchesLeft > 0) {
+            taskScheduler.schedule(this::runBatch, Instant.now().plusMillis(batchDelayMs));
+        } else {
+            batchesLeft = 0;
+        }
+    }
+
+    /**
+     * Reconciles one batch of files and one of rows; returns {@code false} once both are exhausted for this run.
+     */
+    private boolean reconcileBatch() throws IOException {
+        if (!filesDone) {
+            if (!fileCursorLoaded) {
+                fileCursor = loadFileCursor();
+                fileCursorLoaded = true;
+            }
+            List<Path> files = nextFiles(batchSize);
+            if (!files.isEmpty()) {
+                reconcileFiles(files);
+            }
+            filesDone = files.size() < batchSize;
+            saveFileCursor(filesDone ? null : rootDir.relativize(files.get(files.size() - 1)));
+        }
+        if (!rowsDone) {
+            rowsDone = !reconcileRows();
+        }
+        return !filesDone || !rowsDone;
+    }
+
+    /**
+     * Returns up to {@code limit} regular files after the cursor in depth-first order with the
+     * entries of each directory sorted by name. Only directories on the cursor path and after it
+     * are listed, so a run costs the shards it visits instead of the whole tree.
+     */
+    private List<Path> nextFiles(int limit) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(rootDir)) {
+            collectFiles(rootDir, fileCursor, 0, limit, files);
+        }
+        return files;
+    }
+
+    private void collectFiles(Path dir, Path cursor, int depth, int limit, List<Path> files) throws IOException {
+        String after = cursor != null && depth < cursor.getNameCount() ? cursor.getName(depth).toString() : null;
+        if (after != null && depth + 1 < cursor.getNameCount() && !isSegmentsDir(after, depth)
+                && Files.isDirectory(dir.resolve(after), LinkOption.NOFOLLOW_LINKS)) {
+            collectFiles(dir.resolve(after), cursor, depth + 1, limit, files);
+        }
+
+        String lowerBound = after;
+        while (files.size() < limit) {
+            int wanted = limit - files.size();
+            List<Path> children = listAfter(dir, lowerBound, wanted);
+            for (Path child : children) {
+                if (files.size() >= limit) {
+                    return;
+                }
+                lowerBound = child.getFileName().toString();
+                if (isSegmentsDir(lowerBound, depth)) {
+                    continue;
+                }
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    collectFiles(child, null, depth + 1, limit, files);
+                } else if (Files.isRegularFile(child, LinkOption.NOFOLLOW_LINKS) && !(depth == 0 && lowerBound.equals(CURSOR_FILE))) {
+                    files.add(child);
+                }
+            }
+            if (children.size() < wanted) {
+                return;
+            }
+        }
+    }
+
+    private boolean isSegmentsDir(String name, int depth) {
+        return depth == 0 && name.equals(SEGMENTS_DIR);
+    }
+
+    /**
+     * Returns the first {@code limit} entries of {@code dir} whose names sort after {@code lowerBound}.
+     */
+    private List<Path> listAfter(Path dir, String lowerBound, int limit) throws IOException {
+        Comparator<Path> order = Comparator.comparing(path -> path.getFileName().toString());
+        PriorityQueue<Path> next = new PriorityQueue<>(order.reversed());
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                if (lowerBound != null && entry.getFileName().toString().compareTo(lowerBound) <= 0) {
+                    continue;
+                }
+                if (next.size() < limit) {
+                    next.add(entry);
+                } else if (order.compare(entry, next.peek()) < 0) {
+                    next.poll();
+                    next.add(entry);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        }
+        List<Path> children = new ArrayList<>(next);
+        children.sort(order);
+        return children;
+    }
+
+    private Path loadFileCursor() throws IOException {
+        Path file = rootDir.resolve(CURSOR_FILE);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        String cursor = Files.readString(file).trim();
+        return cursor.isEmpty() ? null : Path.of(cursor);
+    }
+
+    private void saveFileCursor(Path cursor) throws IOException {
+        fileCursor = cursor;
+        if (!Files.isDirectory(rootDir)) {
+            return;
+        }
+        Path temp = Files.createTempFile(rootDir, CURSOR_FILE, ".tmp");
+        try {
+            Files.writeString(temp, cursor != null ? cursor.toString() : "");
+            Files.move(temp, rootDir.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void reconcileFiles(List<Path> files) throws IOException {
+        filesScanned.add(files.size());
+
+        long deadline = System.currentTimeMillis() - minAgeMs;
+        List<Path> originals = new ArrayList<>();
+        Map<Path, String> hashThumbnails = new HashMap<>();
+        for (Path file : files) {
+            if (!Files.exists(file) || Files.getLastModifiedTime(file).toMillis() > deadline) {
+                continue;
+            }
+            String name = file.getFileName().toString();
+            Matcher thumbnail = THUMBNAIL.matcher(name);
+            if (file.getParent().equals(rootDir.resolve(TEMP_DIR)) || name.endsWith(".tmp")) {
+                Files.deleteIfExists(file);
+                tempFilesDeleted.increment();
+            } else if (thumbnail.matches() && avatarThumbnailService.getSizes().contains(Integer.valueOf(thumbnail.group(2)))) {
+                String base = thumbnail.group(1);
+                if (HASH.matcher(base).matches()) {
+                    hashThumbnails.put(file, base);
+                } else if (!hasOriginal(file, base)) {
+                    deleteThumbnail(file);
+                }
+            } else {
+                originals.add(file);
+            }
+        }
+
+        if (!originals.isEmpty()) {
+            Set<String> referenced = avatarRepository.findReferencedFilePaths(
+                    originals.stream().map(Path::toString).collect(Collectors.toList()));
+            for (Path file : originals) {
+                if (!referenced.contains(file.toString())) {
+                    logger.info("Orphan avatar file " + file + " is deleted");
+                    avatarThumbnailService.deleteThumbnails(file);
+                    Files.deleteIfExists(file);
+                    orphansDeleted.increment();
+                }
+            }
+        }
+        if (!hashThumbnails.isEmpty()) {
+            Set<String> referenced = avatarRepository.findReferencedFileHashes(new HashSet<>(hashThumbnails.values()));
+            for (Map.Entry<Path, String> entry : hashThumbnails.entrySet()) {
+                if (!referenced.contains(entry.getValue())) {
+                    deleteThumbnail(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the next batch of rows after the cursor; returns {@code false} once the table is exhausted.
+     */
+    private boolean reconcileRows() throws IOException {
+        List<AvatarMetadata> rows = avatarRepository.findByIdGreaterThanOrderById(rowCursor, PageRequest.of(0, batchSize));
+        if (rows.isEmpty()) {
+            rowCursor = 0;
+            return false;
+        }
+        rowCursor = rows.get(rows.size() - 1).getId();
+        rowsScanned.add(rows.size());
+
+        List<Long> missing = new ArrayList<>();
+        List<Long> restored = new ArrayList<>();
+        for (AvatarMetadata row : rows) {
+            if (row.getFilePath() == null) {
+                continue;
+            }
+            boolean exists = isPresent(row);
+            if (!exists && !row.isFileMissing()) {
+                logger.warn("File " + row.getFilePath() + " of avatar id=" + row.getId() + " is missing");
+                missing.add(row.getId());
+            } else if (exists && row.isFileMissing()) {
+                restored.add(row.getId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            rowsFlagged.add(avatarRepository.updateFileMissing(missing, true));
+        }
+        if (!restored.isEmpty()) {
+            rowsRestored.add(avatarRepository.updateFileMissing(restored, false));
+        }
+        return rows.size() == batchSize;
+    }
+
+    private boolean isPresent(AvatarMetadata row) throws IOException {
+        Path file = Path.of(row.getFilePath());
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        long offset = row.getFileOffset() != null ? row.getFileOffset() : 0;
+        return row.getFileSize() == null || Files.size(file) >= offset + row.getFileSize();
+    }
+
+    private boolean hasOriginal(Path thumbnail, String base) throws IOException {
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(thumbnail.getParent(), base + ".*")) {
+            for (Path sibling : siblings) {
+                if (!THUMBNAIL.matcher(sibling.getFileName().toString()).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void deleteThumbnail(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        thumbnailsDeleted.increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("avatar.reconciler.scanned", filesScanned, LongAdder::sum)
+                .tag("kind", "file")
+                .register(registry);
+        FunctionCounter.builder("avatar.reconciler.scanned", rowsScanned, LongAdder::sum)
+                .tag("kind", "row")
+                .register(registry);
+        FunctionCounter.builder("avatar.reconciler.deleted", orphansDeleted, LongAdder::sum)
+                .tag("kind", "orphan")
+                .register(registry);
+        FunctionCounter.builder("avatar.reconciler.deleted", thumbnailsDeleted, LongAdder::sum)
+                .tag("kind", "thumbnail")
+                .register(registry);
+        FunctionCounter.builder("avatar.reconciler.deleted", tempFilesDeleted, LongAdder::sum)
+                .tag("kind", "temp")
+                .register(registry);
+        FunctionCounter.builder("avatar.reconciler.rows.flagged", rowsFlagged, LongAdder::sum)
+                .tag("state", "missing")
+                .register(registry);
+        FunctionCounter.builder("avatar.reconciler.rows.flagged", rowsRestored, LongAdder::sum)
+                .tag("state", "restored")
+                .register(registry);
+    }
+}
@@ -0,0 +1,51 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+public interface AvatarStorage {
+    /**
+     * Writes the avatar and takes a reference on the stored file. {@code journal} is called with
+     * the final location once it is known and before the file appears there, so the caller can
+     * record it for {@link AvatarPendingFileRecovery} ahead of the write.
+     */
+    StoredFile store(Long studentId, String extension, String declaredMediaType, InputStream inputStream,
+                     Consumer<StoredFile> journal) throws IOException;
+
+    default StoredFile store(Long studentId, String extension, String declaredMediaType, InputStream inputStream) throws IOException {
+        return store(studentId, extension, declaredMediaType, inputStream, file -> {
+        });
+    }
+
+    /**
+     * Drops a reference taken by {@link #store}. Called after the avatar row
+     * stopped pointing at the file; the file is removed once nothing uses it.
+     */
+    void release(String filePath, String fileHash) throws IOException;
+
+    /**
+     * Returns the stored bytes. Mapped storages return a view of the mapping,
+     * the others read into a new direct buffer.
+     */
+    default ByteBuffer read(String filePath, long offset, long length) throws IOException {
+        return AvatarFiles.read(Path.of(filePath), offset, length);
+    }
+
+    /**
+     * Whether {@link #read} is served from memory and should be preferred over
+     * streaming the file to the client.
+     */
+    default boolean isMemoryMapped() {
+        return false;
+    }
+
+    /**
+     * Path whose siblings hold the downscaled variants of the avatar.
+     */
+    default Path getThumbnailBase(String filePath, String fileHash) {
+        return Path.of(filePath);
+    }
+}
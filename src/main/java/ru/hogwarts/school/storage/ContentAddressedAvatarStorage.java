@@ -0,0 +1,95 @@
+package ru.hogwarts.school.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.repository.AvatarBlobRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Stores each distinct avatar once under blobs/ab/cd/abcd..., keyed by its SHA-256.
+ * References are counted in avatar_blob; the row lock taken by acquire/decrement
+ * serializes writers and the deleter of the same blob.
+ */
+@Component
+@ConditionalOnProperty(name = "avatars.storage.mode", havingValue = "content-addressed")
+public class ContentAddressedAvatarStorage implements AvatarStorage {
+    private static final String BLOBS_DIR = "blobs";
+    private static final String TEMP_DIR = "tmp";
+
+    @Value("${avatars.dir.path}")
+    private String avatarsDirPath;
+
+    private final AvatarBlobRepository avatarBlobRepository;
+    private final AvatarRepository avatarRepository;
+    private final AvatarThumbnailService avatarThumbnailService;
+
+    public ContentAddressedAvatarStorage(AvatarBlobRepository avatarBlobRepository, AvatarRepository avatarRepository, AvatarThumbnailService avatarThumbnailService) {
+        this.avatarBlobRepository = avatarBlobRepository;
+        this.avatarRepository = avatarRepository;
+        this.avatarThumbnailService = avatarThumbnailService;
+    }
+
+    @Override
+    public StoredFile store(Long studentId, String extension, String declaredMediaType, InputStream inputStream,
+                            Consumer<StoredFile> journal) throws IOException {
+        Path tempDir = Path.of(avatarsDirPath, TEMP_DIR);
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "upload", ".part");
+        try {
+            StoredFile written = AvatarFiles.write(inputStream, temp, declaredMediaType, WRITE, TRUNCATE_EXISTING);
+            Path target = getBlobPath(written.getFileHash());
+            StoredFile stored = new StoredFile(target.toString(), written.getFileSize(), written.getFileHash(), written.getMediaType());
+
+            // journaled only after acquire: recovering an entry whose reference was never taken would drop someone else's
+            avatarBlobRepository.acquire(written.getFileHash(), written.getFileSize());
+            journal.accept(stored);
+            if (!Files.exists(target)) {
+                AvatarFiles.moveAtomically(temp, target);
+            } else {
+                // keeps the reconciler from collecting a blob that is about to be referenced again
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            return stored;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void release(String filePath, String fileHash) throws IOException {
+        if (fileHash == null || !filePath.equals(getBlobPath(fileHash).toString())) {
+            if (!avatarRepository.existsByFilePath(filePath)) {
+                deleteFile(filePath);
+            }
+            return;
+        }
+
+        avatarBlobRepository.decrement(fileHash);
+        if (avatarBlobRepository.deleteUnreferenced(fileHash) > 0) {
+            deleteFile(filePath);
+        }
+    }
+
+    public Path getBlobPath(String hash) {
+        return Path.of(avatarsDirPath, BLOBS_DIR, hash.substring(0, 2), hash.substring(2, 4), hash);
+    }
+
+    private void deleteFile(String filePath) throws IOException {
+        avatarThumbnailService.deleteThumbnails(Path.of(filePath));
+        Files.deleteIfExists(Path.of(filePath));
+    }
+}
@@ -0,0 +1,65 @@
+package ru.hogwarts.school.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+@Component
+@ConditionalOnProperty(name = "avatars.storage.mode", havingValue = "flat", matchIfMissing = true)
+public class FlatAvatarStorage implements AvatarStorage {
+    private static final String TEMP_DIR = "tmp";
+    private static final int HASH_PREFIX_LENGTH = 16;
+
+    @Value("${avatars.dir.path}")
+    private String avatarsDirPath;
+
+    private final AvatarRepository avatarRepository;
+    private final AvatarThumbnailService avatarThumbnailService;
+
+    public FlatAvatarStorage(AvatarRepository avatarRepository, AvatarThumbnailService avatarThumbnailService) {
+        this.avatarRepository = avatarRepository;
+        this.avatarThumbnailService = avatarThumbnailService;
+    }
+
+    /**
+     * Writes {@code <id>-<hash prefix>.<ext>} through a synced temp file and an atomic rename.
+     * The current avatar is left in place; it is released once the row points at the new file.
+     */
+    @Override
+    public StoredFile store(Long studentId, String extension, String declaredMediaType, InputStream inputStream,
+                            Consumer<StoredFile> journal) throws IOException {
+        Path tempDir = Path.of(avatarsDirPath, TEMP_DIR);
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "upload", ".part");
+        try {
+            StoredFile written = AvatarFiles.write(inputStream, temp, declaredMediaType, WRITE, TRUNCATE_EXISTING);
+            Path filePath = Path.of(avatarsDirPath,
+                    studentId + "-" + written.getFileHash().substring(0, HASH_PREFIX_LENGTH) + "." + extension);
+            StoredFile stored = new StoredFile(filePath.toString(), written.getFileSize(), written.getFileHash(), written.getMediaType());
+            journal.accept(stored);
+            AvatarFiles.moveAtomically(temp, filePath);
+            return stored;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void release(String filePath, String fileHash) throws IOException {
+        if (!avatarRepository.existsByFilePath(filePath)) {
+            avatarThumbnailService.deleteThumbnails(Path.of(filePath));
+            Files.deleteIfExists(Path.of(filePath));
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package ru.hogwarts.school.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.projection.AvatarMetadata;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Packs avatars into append-only segment files of at most {@code avatars.segments.max-size} bytes.
+ * An avatar is addressed by (segment path, offset, size) and read through a read-only mapping
+ * of its segment. Sealed segments whose live bytes fall below the threshold are compacted.
+ */
+@Component
+@ConditionalOnProperty(name = "avatars.storage.mode", havingValue = "segment")
+public class SegmentAvatarStorage implements AvatarStorage {
+    private static final String SEGMENTS_DIR = "segments";
+    private static final String THUMBNAILS_DIR = "thumbnails";
+    private static final String TEMP_DIR = "tmp";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final Logger logger = LoggerFactory.getLogger(SegmentAvatarStorage.class);
+    private final AvatarRepository avatarRepository;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final Path rootDir;
+    private final Path segmentsDir;
+    private final long maxSegmentSize;
+    private final double compactionThreshold;
+
+    private final Map<Path, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private final Map<Path, Long> retiredSegments = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+    private Path activeSegment;
+    private FileChannel activeChannel;
+
+    public SegmentAvatarStorage(AvatarRepository avatarRepository,
+                                AvatarThumbnailService avatarThumbnailService,
+                                @Value("${avatars.dir.path}") String avatarsDirPath,
+                                @Value("${avatars.segments.max-size:268435456}") long maxSegmentSize,
+                                @Value("${avatars.segments.compaction-threshold:0.5}") double compactionThreshold) {
+        if (maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("avatars.segments.max-size must fit into a single mapping");
+        }
+        this.avatarRepository = avatarRepository;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.rootDir = Path.of(avatarsDirPath);
+        this.segmentsDir = rootDir.resolve(SEGMENTS_DIR);
+        this.maxSegmentSize = maxSegmentSize;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Override
+    public StoredFile store(Long studentId, String extension, String declaredMediaType, InputStream inputStream,
+                            Consumer<StoredFile> journal) throws IOException {
+        Path tempDir = rootDir.resolve(TEMP_DIR);
+        Files.createDirectories(tempDir);
+        Path temp = Files.createTempFile(tempDir, "upload", ".part");
+        try {
+            StoredFile written = AvatarFiles.write(inputStream, temp, declaredMediaType, WRITE, TRUNCATE_EXISTING);
+            try (FileChannel source = FileChannel.open(temp, READ)) {
+                return append(source, 0, written.getFileSize(), written.getFileHash(), written.getMediaType(), journal);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Space of replaced avatars is reclaimed by {@link #compact()}; thumbnails are shared by
+     * every avatar with the same hash and are deleted once no avatar row has that hash.
+     */
+    @Override
+    public void release(String filePath, String fileHash) throws IOException {
+        if (fileHash != null && !avatarRepository.existsByFileHash(fileHash)) {
+            avatarThumbnailService.deleteThumbnails(getThumbnailBase(filePath, fileHash));
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String filePath, long offset, long length) throws IOException {
+        MappedByteBuffer mapping = getMapping(Path.of(filePath), offset + length);
+        ByteBuffer slice = mapping.duplicate();
+        slice.position(Math.toIntExact(offset));
+        slice.limit(Math.toIntExact(offset + length));
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean isMemoryMapped() {
+        return true;
+    }
+
+    @Override
+    public Path getThumbnailBase(String filePath, String fileHash) {
+        if (fileHash == null) {
+            return Path.of(filePath);
+        }
+        return rootDir.resolve(THUMBNAILS_DIR)
+                .resolve(fileHash.substring(0, 2))
+                .resolve(fileHash.substring(2, 4))
+                .resolve(fileHash);
+    }
+
+    @Scheduled(fixedDelayString = "${avatars.segments.compaction-interval-ms:600000}")
+    public void compact() throws IOException {
+        deleteRetiredSegments();
+
+        for (Path segment : listSealedSegments()) {
+            long segmentSize = Files.size(segment);
+            long liveBytes = avatarRepository.sumFileSizeByFilePath(segment.toString());
+            if (segmentSize == 0 || (double) liveBytes / segmentSize >= compactionThreshold) {
+                continue;
+            }
+
+            logger.info("Compacting " + segment + ": " + liveBytes + " of " + segmentSize + " bytes are live");
+            try (FileChannel source = FileChannel.open(segment, READ)) {
+                for (AvatarMetadata avatar : avatarRepository.findMetadataByFilePath(segment.toString())) {
+                    StoredFile moved = append(source, avatar.getFileOffset(), avatar.getFileSize(), avatar.getFileHash(), avatar.getMediaType(), file -> {
+                    });
+                    int updated = avatarRepository.relocate(avatar.getId(), segment.toString(), avatar.getFileOffset(), moved.getFilePath(), moved.getFileOffset());
+                    if (updated == 0) {
+                        logger.info("Avatar id=" + avatar.getId() + " was replaced during compaction");
+                    }
+                }
+            }
+            retiredSegments.put(segment, System.currentTimeMillis());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (activeChannel != null) {
+                activeChannel.close();
+            }
+        }
+    }
+
+    private StoredFile append(FileChannel source, long sourceOffset, long length, String fileHash, String mediaType,
+                              Consumer<StoredFile> journal) throws IOException {
+        synchronized (appendLock) {
+            FileChannel channel = getActiveChannel(length);
+            long offset = channel.size();
+            StoredFile stored = new StoredFile(activeSegment.toString(), offset, length, fileHash, mediaType);
+            journal.accept(stored);
+            long transferred = 0;
+            while (transferred < length) {
+                long n = channel.transferFrom(source.position(sourceOffset + transferred), offset + transferred, length - transferred);
+                if (n <= 0) {
+                    throw new IOException("Unexpected end of " + source);
+                }
+                transferred += n;
+            }
+            channel.force(false);
+            return stored;
+        }
+    }
+
+    private FileChannel getActiveChannel(long length) throws IOException {
+        if (activeChannel != null && activeChannel.size() + length <= maxSegmentSize) {
+            return activeChannel;
+        }
+        if (activeChannel != null) {
+            activeChannel.close();
+        }
+
+        Files.createDirectories(segmentsDir);
+        List<Path> segments = listSegments();
+        Path last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last != null && activeSegment == null && Files.size(last) + length <= maxSegmentSize) {
+            activeSegment = last;
+        } else {
+            long number = last == null ? 1 : segmentNumber(last) + 1;
+            activeSegment = segmentsDir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        }
+        activeChannel = FileChannel.open(activeSegment, CREATE, READ, WRITE);
+        return activeChannel;
+    }
+
+    private MappedByteBuffer getMapping(Path segment, long requiredSize) throws IOException {
+        MappedByteBuffer mapping = mappings.get(segment);
+        if (mapping != null && mapping.capacity() >= requiredSize) {
+            return mapping;
+        }
+        synchronized (mappings) {
+            mapping = mappings.get(segment);
+            if (mapping == null || mapping.capacity() < requiredSize) {
+                try (FileChannel channel = FileChannel.open(segment, READ)) {
+                    mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                mappings.put(segment, mapping);
+            }
+            return mapping;
+        }
+    }
+
+    private void deleteRetiredSegments() throws IOException {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Long>> iterator = retiredSegments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            // readers may still hold metadata that points into the old segment
+            if (now - entry.getValue() < 60_000) {
+                continue;
+            }
+            if (avatarRepository.sumFileSizeByFilePath(entry.getKey().toString()) == 0) {
+                mappings.remove(entry.getKey());
+                Files.deleteIfExists(entry.getKey());
+                logger.info("Segment " + entry.getKey() + " is deleted");
+            }
+            iterator.remove();
+        }
+    }
+
+    private List<Path> listSealedSegments() throws IOException {
+        synchronized (appendLock) {
+            return listSegments()
+                    .stream()
+                    .filter(segment -> !segment.equals(activeSegment))
+                    .filter(segment -> !retiredSegments.containsKey(segment))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(segmentsDir)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(segmentsDir)) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted(Comparator.comparingLong(this::segmentNumber))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
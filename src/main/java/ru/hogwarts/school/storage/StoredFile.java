@@ -0,0 +1,67 @@
+package ru.hogwarts.school.storage;
+
+import java.util.Objects;
+
+public class StoredFile {
+    private final String filePath;
+    private final Long fileOffset;
+    private final Long fileSize;
+    private final String fileHash;
+    private final String mediaType;
+
+    public StoredFile(String filePath, Long fileSize, String fileHash, String mediaType) {
+        this(filePath, 0L, fileSize, fileHash, mediaType);
+    }
+
+    public StoredFile(String filePath, Long fileOffset, Long fileSize, String fileHash, String mediaType) {
+        this.filePath = filePath;
+        this.fileOffset = fileOffset;
+        this.fileSize = fileSize;
+        this.fileHash = fileHash;
+        this.mediaType = mediaType;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public Long getFileOffset() {
+        return fileOffset;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StoredFile that = (StoredFile) o;
+        return Objects.equals(filePath, that.filePath) && Objects.equals(fileOffset, that.fileOffset) && Objects.equals(fileSize, that.fileSize) && Objects.equals(fileHash, that.fileHash) && Objects.equals(mediaType, that.mediaType);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filePath, fileOffset, fileSize, fileHash, mediaType);
+    }
+
+    @Override
+    public String toString() {
+        return "StoredFile{" +
+                "filePath='" + filePath + '\'' +
+                ", fileOffset=" + fileOffset +
+                ", fileSize=" + fileSize +
+                ", fileHash='" + fileHash + '\'' +
+                ", mediaType='" + mediaType + '\'' +
+                '}';
+    }
+}
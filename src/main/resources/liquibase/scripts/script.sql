@@ -2,4 +2,42 @@
 
 -- changeset yuzu:1
 CREATE INDEX user_name_index ON student (name);
-CREATE INDEX faculty_color_index ON faculty (color);
\ No newline at end of file
+CREATE INDEX faculty_color_index ON faculty (color);
+
+-- changeset yuzu:2
+ALTER TABLE avatar ADD COLUMN file_hash VARCHAR(64);
+
+-- changeset yuzu:3
+CREATE TABLE avatar_blob (
+    hash VARCHAR(64) PRIMARY KEY,
+    file_size BIGINT NOT NULL,
+    ref_count BIGINT NOT NULL
+);
+CREATE INDEX avatar_file_path_index ON avatar (file_path);
+
+-- changeset yuzu:4
+ALTER TABLE avatar ADD COLUMN file_offset BIGINT NOT NULL DEFAULT 0;
+
+-- changeset yuzu:5
+ALTER TABLE avatar ADD COLUMN file_missing BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- changeset yuzu:6
+CREATE TABLE avatar_pending_file (
+    id BIGSERIAL PRIMARY KEY,
+    file_path VARCHAR(255) NOT NULL,
+    file_hash VARCHAR(64),
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+CREATE INDEX avatar_pending_file_created_at_index ON avatar_pending_file (created_at);
+
+-- changeset yuzu:7
+ALTER SEQUENCE student_id_seq INCREMENT BY 50;
+ALTER SEQUENCE faculty_id_seq INCREMENT BY 50;
+
+-- changeset yuzu:8
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX student_name_trgm_index ON student USING gin (name gin_trgm_ops);
+
+-- changeset yuzu:9
+DELETE FROM avatar a USING avatar newer WHERE a.student_id = newer.student_id AND a.id < newer.id;
+ALTER TABLE avatar ADD CONSTRAINT avatar_student_id_unique UNIQUE (student_id);
@@ -0,0 +1,96 @@
+package ru.hogwarts.school.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AvatarPreviewCacheTest {
+    private static AvatarPreview preview(int size) {
+        return new AvatarPreview("image/png", ByteBuffer.allocateDirect(size));
+    }
+
+    @Test
+    public void put_overBudget_shouldEvictLeastRecentlyUsed() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(100);
+        cache.put(1L, null, preview(40));
+        cache.put(2L, null, preview(40));
+        cache.get(1L, null);
+        cache.put(3L, null, preview(40));
+
+        assertNotNull(cache.get(1L, null));
+        assertNull(cache.get(2L, null));
+        assertNotNull(cache.get(3L, null));
+        assertEquals(80, cache.getCurrentBytes());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void put_largerThanBudget_shouldNotBeCached() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(100);
+        cache.put(1L, null, preview(101));
+
+        assertNull(cache.get(1L, null));
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void invalidate_shouldDropAllSizesOfStudent() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(100);
+        cache.put(1L, null, preview(30));
+        cache.put(1L, 64, preview(10));
+        cache.put(2L, 64, preview(10));
+        cache.invalidate(1L);
+
+        assertNull(cache.get(1L, null));
+        assertNull(cache.get(1L, 64));
+        assertNotNull(cache.get(2L, 64));
+        assertEquals(10, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void invalidate_shouldReleaseBytesAndCountMisses() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(100);
+        cache.put(1L, null, preview(30));
+        cache.get(1L, null);
+        cache.invalidate(1L);
+        cache.get(1L, null);
+
+        assertEquals(0, cache.getCurrentBytes());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void put_afterInvalidateSinceVersion_shouldNotBeCached() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(100);
+        long staleVersion = cache.version(1L);
+        cache.invalidate(1L);
+        cache.put(1L, null, preview(30), staleVersion);
+        cache.put(2L, null, preview(30), cache.version(2L));
+
+        assertNull(cache.get(1L, null));
+        assertNotNull(cache.get(2L, null));
+        assertEquals(30, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void invalidate_afterEviction_shouldDropOnlyRemainingSizes() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(100);
+        cache.put(1L, null, preview(40));
+        cache.put(1L, 64, preview(40));
+        cache.put(2L, null, preview(40));
+        cache.invalidate(1L);
+        cache.put(1L, 64, preview(20));
+
+        assertEquals(60, cache.getCurrentBytes());
+        assertEquals(2, cache.getEntryCount());
+        cache.invalidate(1L);
+
+        assertNull(cache.get(1L, 64));
+        assertNotNull(cache.get(2L, null));
+        assertEquals(40, cache.getCurrentBytes());
+        assertEquals(1, cache.getEntryCount());
+    }
+}
@@ -0,0 +1,78 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.dto.ChangeDTO;
+import ru.hogwarts.school.dto.ChangeDTO.Action;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.feed.ChangeFeed;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ChangeController.class)
+@Import(ChangeFeed.class)
+public class ChangeControllerTest {
+    private static final Pattern RESET_ID = Pattern.compile("id:(\\S+)\\nevent:reset");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        public TaskExecutor changeFeedExecutor() {
+            return new SyncTaskExecutor();
+        }
+    }
+
+    @Test
+    public void getChanges_withLastEventId_shouldReturnOnlyLaterChanges() throws Exception {
+        changeFeed.append(new ChangeDTO(ChangeFeed.STUDENT, Action.CREATED, 1L, new StudentDetailDTO(1L, "one", 11, null)));
+
+        String reset = getChanges("unknown-1");
+        Matcher matcher = RESET_ID.matcher(reset);
+        assertThat(matcher.find()).isTrue();
+        String lastEventId = matcher.group(1);
+
+        changeFeed.append(new ChangeDTO(ChangeFeed.STUDENT, Action.UPDATED, 1L, new StudentDetailDTO(1L, "one", 12, null)));
+        changeFeed.append(new ChangeDTO(ChangeFeed.STUDENT, Action.DELETED, 1L, null));
+
+        String changes = getChanges(lastEventId);
+        assertThat(changes)
+                .doesNotContain("event:reset")
+                .doesNotContain("CREATED")
+                .contains("\"action\":\"UPDATED\"")
+                .contains("\"action\":\"DELETED\"");
+    }
+
+    private String getChanges(String lastEventId) throws Exception {
+        return mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/changes")
+                                .header("Last-Event-ID", lastEventId)
+                                .accept(MediaType.TEXT_EVENT_STREAM)
+                )
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+}
@@ -57,7 +57,7 @@ public class FacultyControllerTest {
                 new Faculty(2L, "two", "green"),
                 new Faculty(3L, "three", "red")
         );
-        when(facultyRepository.findAll()).thenReturn(faculties);
+        when(facultyRepository.findByIdGreaterThanOrderById(anyLong(), any())).thenReturn(faculties);
 
         mockMvc.perform(
                         MockMvcRequestBuilders
@@ -65,10 +65,10 @@ public class FacultyControllerTest {
                                 .accept(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(3))
-                .andExpect(jsonPath("$[0]").value(faculties.get(0)))
-                .andExpect(jsonPath("$[1]").value(faculties.get(1)))
-                .andExpect(jsonPath("$[2]").value(faculties.get(2)));
+                .andExpect(jsonPath("$.items.length()").value(3))
+                .andExpect(jsonPath("$.items[0]").value(faculties.get(0)))
+                .andExpect(jsonPath("$.items[1]").value(faculties.get(1)))
+                .andExpect(jsonPath("$.items[2]").value(faculties.get(2)));
     }
 
     @Test
@@ -78,7 +78,7 @@ public class FacultyControllerTest {
                 new Faculty(2L, "two", "red"),
                 new Faculty(3L, "three", "red")
         );
-        when(facultyRepository.findByColorIgnoreCase(anyString())).thenReturn(faculties);
+        when(facultyRepository.findByColorIgnoreCaseAndIdGreaterThanOrderById(anyString(), anyLong(), any())).thenReturn(faculties);
 
         mockMvc.perform(
                         MockMvcRequestBuilders
@@ -87,10 +87,10 @@ public class FacultyControllerTest {
                                 .accept(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(3))
-                .andExpect(jsonPath("$[0]").value(faculties.get(0)))
-                .andExpect(jsonPath("$[1]").value(faculties.get(1)))
-                .andExpect(jsonPath("$[2]").value(faculties.get(2)));
+                .andExpect(jsonPath("$.items.length()").value(3))
+                .andExpect(jsonPath("$.items[0]").value(faculties.get(0)))
+                .andExpect(jsonPath("$.items[1]").value(faculties.get(1)))
+                .andExpect(jsonPath("$.items[2]").value(faculties.get(2)));
     }
 
     @Test
@@ -100,7 +100,7 @@ public class FacultyControllerTest {
                 new Faculty(2L, "name", "g"),
                 new Faculty(3L, "nAmE", "b")
         );
-        when(facultyRepository.findByNameIgnoreCase(anyString())).thenReturn(faculties);
+        when(facultyRepository.findByNameIgnoreCaseAndIdGreaterThanOrderById(anyString(), anyLong(), any())).thenReturn(faculties);
 
         mockMvc.perform(
                         MockMvcRequestBuilders
@@ -109,10 +109,10 @@ public class FacultyControllerTest {
                                 .accept(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(3))
-                .andExpect(jsonPath("$[0]").value(faculties.get(0)))
-                .andExpect(jsonPath("$[1]").value(faculties.get(1)))
-                .andExpect(jsonPath("$[2]").value(faculties.get(2)));
+                .andExpect(jsonPath("$.items.length()").value(3))
+                .andExpect(jsonPath("$.items[0]").value(faculties.get(0)))
+                .andExpect(jsonPath("$.items[1]").value(faculties.get(1)))
+                .andExpect(jsonPath("$.items[2]").value(faculties.get(2)));
     }
 
     @Test
@@ -275,7 +275,8 @@ public class FacultyControllerTest {
         faculty.addStudent(students.get(1));
         faculty.addStudent(students.get(2));
 
-        when(facultyRepository.findById(anyLong())).thenReturn(Optional.of(faculty));
+        when(facultyRepository.existsById(anyLong())).thenReturn(true);
+        when(studentRepository.findByFacultyIdAndIdGreaterThanOrderById(anyLong(), anyLong(), any())).thenReturn(students);
 
         mockMvc.perform(
                         MockMvcRequestBuilders
@@ -283,6 +284,7 @@ public class FacultyControllerTest {
                                 .accept(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(3));
+                .andExpect(jsonPath("$.items.length()").value(3))
+                .andExpect(jsonPath("$.next").isEmpty());
     }
 }
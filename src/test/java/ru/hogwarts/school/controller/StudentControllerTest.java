@@ -7,28 +7,54 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.cache.AvatarPreviewCache;
+import ru.hogwarts.school.cache.FacultyStudentsCache;
+import ru.hogwarts.school.dto.StudentDetailDTO;
 import ru.hogwarts.school.dto.mapper.AvatarDTOMapper;
 import ru.hogwarts.school.dto.mapper.FacultyDTOMapper;
 import ru.hogwarts.school.dto.mapper.StudentDTOMapper;
 import ru.hogwarts.school.exception.ErrorInfo;
+import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.pagination.Cursors;
+import ru.hogwarts.school.repository.AvatarPendingFileRepository;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.repository.projection.AgeCount;
+import ru.hogwarts.school.repository.projection.AvatarMetadata;
+import ru.hogwarts.school.repository.projection.StudentMatch;
+import ru.hogwarts.school.search.StudentNameIndex;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+import ru.hogwarts.school.service.StudentBulkService;
 import ru.hogwarts.school.service.StudentService;
+import ru.hogwarts.school.statistics.StudentStatistics;
+import ru.hogwarts.school.storage.AvatarStorage;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.when;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(StudentController.class)
 public class StudentControllerTest {
@@ -59,9 +85,38 @@ public class StudentControllerTest {
     @SpyBean
     private AvatarService avatarService;
 
+    @SpyBean
+    private AvatarPreviewCache avatarPreviewCache;
+
+    @SpyBean
+    private AvatarThumbnailService avatarThumbnailService;
+
+    @MockBean
+    private AvatarStorage avatarStorage;
+
+    @MockBean
+    private AvatarPendingFileRepository avatarPendingFileRepository;
+
+    @MockBean
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private StudentBulkService studentBulkService;
+
+    @MockBean
+    private FacultyStudentsCache facultyStudentsCache;
+
+    @SpyBean
+    private StudentStatistics studentStatistics;
+
+    @SpyBean
+    private StudentNameIndex studentNameIndex;
+
     @InjectMocks
     private StudentController studentController;
 
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
 
     @Test
     public void findAllStudents_noParams_shouldReturnAllStudents() throws Exception {
@@ -70,7 +125,7 @@ public class StudentControllerTest {
                 new Student(2L, "two", 20),
                 new Student(3L, "three", 30)
         );
-        when(studentRepository.findAll()).thenReturn(students);
+        when(studentRepository.findByIdGreaterThanOrderById(anyLong(), any())).thenReturn(students);
 
         mockMvc.perform(
                         MockMvcRequestBuilders
@@ -78,10 +133,10 @@ public class StudentControllerTest {
                                 .accept(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(3))
-                .andExpect(jsonPath("$[0]").value(students.get(0)))
-                .andExpect(jsonPath("$[1]").value(students.get(1)))
-                .andExpect(jsonPath("$[2]").value(students.get(2)));
+                .andExpect(jsonPath("$.items.length()").value(3))
+                .andExpect(jsonPath("$.items[0]").value(students.get(0)))
+                .andExpect(jsonPath("$.items[1]").value(students.get(1)))
+                .andExpect(jsonPath("$.items[2]").value(students.get(2)));
     }
 
     @Test
@@ -90,7 +145,7 @@ public class StudentControllerTest {
                 new Student(1L, "one", 10),
                 new Student(2L, "two", 10)
         );
-        when(studentRepository.findByAge(anyInt())).thenReturn(students);
+        when(studentRepository.findByAgeAndIdGreaterThanOrderById(anyInt(), anyLong(), any())).thenReturn(students);
 
         mockMvc.perform(
                         MockMvcRequestBuilders
@@ -99,9 +154,9 @@ public class StudentControllerTest {
                                 .accept(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(2))
-                .andExpect(jsonPath("$[0]").value(students.get(0)))
-                .andExpect(jsonPath("$[1]").value(students.get(1)));
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0]").value(students.get(0)))
+                .andExpect(jsonPath("$.items[1]").value(students.get(1)));
     }
 
     @Test
@@ -110,7 +165,7 @@ public class StudentControllerTest {
                 new Student(1L, "two", 20),
                 new Student(2L, "three", 30)
         );
-        when(studentRepository.findByAgeBetween(anyInt(), anyInt())).thenReturn(students);
+        when(studentRepository.findByAgeBetweenAndIdGreaterThanOrderById(anyInt(), anyInt(), anyLong(), any())).thenReturn(students);
 
         mockMvc.perform(
                         MockMvcRequestBuilders
@@ -120,9 +175,147 @@ public class StudentControllerTest {
                                 .accept(MediaType.APPLICATION_JSON)
                 )
                 .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0]").value(students.get(0)))
+                .andExpect(jsonPath("$.items[1]").value(students.get(1)));
+    }
+
+    @Test
+    public void findAllStudents_moreThanLimit_shouldReturnNextCursor() throws Exception {
+        List<Student> students = List.of(
+                new Student(4L, "four", 10),
+                new Student(5L, "five", 20),
+                new Student(6L, "six", 30)
+        );
+        when(studentRepository.findByIdGreaterThanOrderById(eq(3L), any())).thenReturn(students);
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/student")
+                                .param("cursor", Cursors.encode(3L))
+                                .param("limit", "2")
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[1].id").value(5L))
+                .andExpect(jsonPath("$.next").value(Cursors.encode(5L)));
+    }
+
+    @Test
+    public void findAllStudents_invalidCursor_shouldReturnErrorInfo() throws Exception {
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/student")
+                                .param("cursor", "not a cursor")
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$").value(new ErrorInfo("Invalid cursor")));
+    }
+
+    @Test
+    public void exportStudents_ok_shouldStreamNdjson() throws Exception {
+        when(studentRepository.streamAllDetails()).thenReturn(Stream.of(
+                new StudentDetailDTO(1L, "one", 10, null),
+                new StudentDetailDTO(2L, "two", 20, 3L)
+        ));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/student/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(
+                        "{\"id\":1,\"name\":\"one\",\"age\":10,\"faculty\":null}\n" +
+                                "{\"id\":2,\"name\":\"two\",\"age\":20,\"faculty\":3}\n"));
+    }
+
+    @Test
+    public void getCountAndAvgAge_repeatedCalls_shouldScanOnce() throws Exception {
+        AgeCount ageCount = projectionFactory.createProjection(AgeCount.class, Map.of("faculty", 1L, "age", 15, "students", 4L));
+        when(studentRepository.countByFacultyAndAge()).thenReturn(List.of(ageCount));
+        // the statistics bean lives as long as the context, so reload it from the stub
+        studentStatistics.reconcile();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(MockMvcRequestBuilders.get("/student/count"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("4"));
+            mockMvc.perform(MockMvcRequestBuilders.get("/student/avg-age"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("15.0"));
+        }
+        verify(studentRepository, times(1)).countByFacultyAndAge();
+    }
+
+    @Test
+    public void getAgeStats_byFaculty_shouldReturnPercentilesAndHistogram() throws Exception {
+        when(studentRepository.countByFacultyAndAge()).thenReturn(List.of(
+                projectionFactory.createProjection(AgeCount.class, Map.of("faculty", 1L, "age", 11, "students", 8L)),
+                projectionFactory.createProjection(AgeCount.class, Map.of("faculty", 1L, "age", 17, "students", 2L)),
+                projectionFactory.createProjection(AgeCount.class, Map.of("faculty", 2L, "age", 40, "students", 1L))
+        ));
+        studentStatistics.reconcile();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/student/age-stats")
+                                .param("faculty", "1")
+                                .param("bucket", "5")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.students").value(10))
+                .andExpect(jsonPath("$.p50").value(11))
+                .andExpect(jsonPath("$.p90").value(17))
+                .andExpect(jsonPath("$.maxAge").value(17))
+                .andExpect(jsonPath("$.histogram.10").value(8))
+                .andExpect(jsonPath("$.histogram.15").value(2));
+    }
+
+    @Test
+    public void searchStudents_byPrefix_shouldReturnMatchesFromIndex() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(studentRepository.streamAllDetails()).thenReturn(Stream.of(
+                new StudentDetailDTO(1L, "Harry", 11, null),
+                new StudentDetailDTO(2L, "Hermione", 11, 1L),
+                new StudentDetailDTO(3L, "harold", 12, null)
+        ));
+        studentNameIndex.rebuild();
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/student/search")
+                                .param("prefix", "HAR")
+                                .param("limit", "5")
+                )
+                .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(2))
-                .andExpect(jsonPath("$[0]").value(students.get(0)))
-                .andExpect(jsonPath("$[1]").value(students.get(1)));
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(1));
+        verify(studentRepository, never()).findByNameStartingWithIgnoreCase(any(), any());
+    }
+
+    @Test
+    public void searchStudentsFuzzy_misspelledName_shouldReturnRankedMatches() throws Exception {
+        StudentMatch match = projectionFactory.createProjection(StudentMatch.class,
+                Map.of("id", 2L, "name", "Hermione", "age", 11, "faculty", 1L, "score", 0.6));
+        when(studentRepository.findSimilarByName("Hermoine_%", "%Hermoine\\_\\%%", 10)).thenReturn(List.of(match));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/student/search/fuzzy")
+                                .param("query", "Hermoine_%")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Hermione"))
+                .andExpect(jsonPath("$[0].score").value(0.6));
     }
 
     @Test
@@ -269,6 +462,7 @@ public class StudentControllerTest {
         faculty.addStudent(student);
 
         when(studentRepository.findById(anyLong())).thenReturn(Optional.of(student));
+        when(studentRepository.findIdsByFacultyId(faculty.getId())).thenReturn(Set.of(student.getId()));
 
         mockMvc.perform(
                         MockMvcRequestBuilders
@@ -295,4 +489,63 @@ public class StudentControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$").value(new ErrorInfo("Student not found")));
     }
+
+    @Test
+    public void downloadAvatar_rangeRequested_shouldReturnPartialContent() throws Exception {
+        Path file = Files.createTempFile("avatar", ".png");
+        Files.write(file, "0123456789".getBytes());
+        Avatar avatar = new Avatar(1L, file.toString(), 10L, "image/png", null);
+        avatar.setFileHash("abc");
+
+        when(avatarRepository.findMetadataByStudentId(anyLong()))
+                .thenReturn(Optional.of(projectionFactory.createProjection(AvatarMetadata.class, avatar)));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/student/{id}/avatar", 1L)
+                                .header(HttpHeaders.RANGE, "bytes=2-5")
+                )
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""))
+                .andExpect(content().bytes("2345".getBytes()));
+    }
+
+    @Test
+    public void downloadAvatar_malformedRange_shouldReturnRangeNotSatisfiable() throws Exception {
+        Path file = Files.createTempFile("avatar", ".png");
+        Files.write(file, "0123456789".getBytes());
+        Avatar avatar = new Avatar(1L, file.toString(), 10L, "image/png", null);
+        avatar.setFileHash("abc");
+
+        when(avatarRepository.findMetadataByStudentId(anyLong()))
+                .thenReturn(Optional.of(projectionFactory.createProjection(AvatarMetadata.class, avatar)));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/student/{id}/avatar", 1L)
+                                .header(HttpHeaders.RANGE, "bytes=5-2")
+                )
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    public void downloadAvatar_eTagMatches_shouldReturnNotModified() throws Exception {
+        Path file = Files.createTempFile("avatar", ".png");
+        Files.write(file, "0123456789".getBytes());
+        Avatar avatar = new Avatar(1L, file.toString(), 10L, "image/png", null);
+        avatar.setFileHash("abc");
+
+        when(avatarRepository.findMetadataByStudentId(anyLong()))
+                .thenReturn(Optional.of(projectionFactory.createProjection(AvatarMetadata.class, avatar)));
+
+        mockMvc.perform(
+                        MockMvcRequestBuilders
+                                .get("/student/{id}/avatar", 1L)
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"abc\"")
+                )
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
 }
@@ -0,0 +1,105 @@
+package ru.hogwarts.school.datasource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read-only transactions that go to a replica may read the second-level cache but must not fill it;
+ * sticky reads, which go to the primary, fill it as usual.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ReplicaCacheModeJpaDialectTest {
+    private final ReplicaStickiness stickiness = new ReplicaStickiness(60_000);
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+    private Long studentId;
+
+    @BeforeEach
+    public void setUp() {
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        transactionManager.setJpaDialect(new ReplicaCacheModeJpaDialect(stickiness));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        studentId = transactionTemplate.execute(status -> studentRepository.save(new Student(null, "Harry", 11)).getId());
+        transactionTemplate.executeWithoutResult(status -> facultyRepository.save(new Faculty(null, "Gryffindor", "red")));
+        entityManagerFactory.getCache().evictAll();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        stickiness.clear();
+        transactionTemplate.setReadOnly(false);
+        transactionTemplate.executeWithoutResult(status -> {
+            studentRepository.deleteAll();
+            facultyRepository.deleteAll();
+        });
+    }
+
+    @Test
+    public void replicaRead_shouldNotFillCache() {
+        read();
+
+        assertEquals(0, statistics.getSecondLevelCachePutCount());
+        assertFalse(entityManagerFactory.getCache().contains(Student.class, studentId));
+    }
+
+    @Test
+    public void replicaQuery_shouldNotFillQueryCache() {
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> facultyRepository.findByColorIgnoreCaseAndIdGreaterThanOrderById("red", 0L, null));
+
+        assertEquals(0, statistics.getQueryCachePutCount());
+        assertEquals(0, statistics.getSecondLevelCachePutCount());
+    }
+
+    @Test
+    public void stickyRead_shouldFillCache_andReplicaRead_shouldStillHitIt() {
+        stickiness.stickUntil(System.currentTimeMillis() + 60_000);
+        read();
+        assertTrue(entityManagerFactory.getCache().contains(Student.class, studentId));
+
+        stickiness.clear();
+        statistics.clear();
+        read();
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    private void read() {
+        transactionTemplate.setReadOnly(true);
+        Student student = transactionTemplate.execute(status -> studentRepository.findById(studentId).orElseThrow());
+        assertEquals("Harry", student.getName());
+    }
+}
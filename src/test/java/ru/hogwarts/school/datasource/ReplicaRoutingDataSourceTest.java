@@ -0,0 +1,65 @@
+package ru.hogwarts.school.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReplicaRoutingDataSourceTest {
+    private final ReplicaStickiness stickiness = new ReplicaStickiness(60_000);
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(
+                database("primary"), List.of(database("replica")), stickiness);
+        routingDataSource.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        stickiness.clear();
+    }
+
+    @Test
+    public void readOnlyTransaction_shouldUseReplica_readWriteTransaction_shouldUsePrimary() {
+        assertEquals("replica", getNode(true));
+        assertEquals("primary", getNode(false));
+    }
+
+    @Test
+    public void readOnlyTransaction_afterWrite_shouldUsePrimaryUntilWindowPasses() {
+        assertEquals("primary", getNode(false));
+        assertEquals("primary", getNode(true));
+
+        stickiness.stickUntil(System.currentTimeMillis() - 1);
+        assertEquals("replica", getNode(true));
+    }
+
+    private String getNode(boolean readOnly) {
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("select name from node", String.class));
+    }
+
+    private DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("create table if not exists node(name varchar(16))");
+        template.update("delete from node");
+        template.update("insert into node(name) values (?)", name);
+        return dataSource;
+    }
+}
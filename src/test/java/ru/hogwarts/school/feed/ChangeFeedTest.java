@@ -0,0 +1,28 @@
+package ru.hogwarts.school.feed;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import ru.hogwarts.school.dto.ChangeDTO;
+import ru.hogwarts.school.dto.ChangeDTO.Action;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChangeFeedTest {
+    @Test
+    public void append_subscriberOverSendTimeout_shouldBeDropped() {
+        ChangeFeed fast = new ChangeFeed(new SyncTaskExecutor(), 16, 60_000, 60_000, 100);
+        ChangeFeed slow = new ChangeFeed(new SyncTaskExecutor(), 16, 60_000, -1, 100);
+        fast.subscribe(null);
+        slow.subscribe(null);
+
+        ChangeDTO change = new ChangeDTO(ChangeFeed.STUDENT, Action.CREATED, 1L, new StudentDetailDTO(1L, "one", 11, null));
+        fast.append(change);
+        slow.append(change);
+
+        assertEquals(1, fast.getSubscriberCount());
+        assertEquals(0, fast.getDropCount());
+        assertEquals(0, slow.getSubscriberCount());
+        assertEquals(1, slow.getDropCount());
+    }
+}
@@ -0,0 +1,65 @@
+package ru.hogwarts.school.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AvatarUploadAdmissionFilterTest {
+    private final AvatarUploadAdmissionFilter filter =
+            new AvatarUploadAdmissionFilter(new ObjectMapper(), 1, 0, 0, 3, 10);
+
+    private static MockHttpServletRequest upload() {
+        return new MockHttpServletRequest("POST", "/student/1/avatar");
+    }
+
+    @Test
+    public void doFilter_saturated_shouldRejectWithRetryAfter() throws Exception {
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+
+        filter.doFilter(upload(), admitted, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                try {
+                    filter.doFilter(upload(), rejected, new MockFilterChain());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }));
+
+        assertEquals(200, admitted.getStatus());
+        assertEquals(503, rejected.getStatus());
+        assertEquals("3", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(1, filter.getRejectedCount());
+        assertEquals(0, filter.getInFlight());
+    }
+
+    @Test
+    public void doFilter_otherEndpoint_shouldNotBeLimited() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(upload(), new MockHttpServletResponse(), new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse ignored) {
+                try {
+                    filter.doFilter(new MockHttpServletRequest("GET", "/student/1/avatar"), response, new MockFilterChain());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(0, filter.getRejectedCount());
+    }
+}
@@ -0,0 +1,44 @@
+package ru.hogwarts.school.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import ru.hogwarts.school.model.AvatarPendingFile;
+import ru.hogwarts.school.storage.StoredFile;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(AvatarJdbcRepository.class)
+public class AvatarJdbcRepositoryTest {
+    @Autowired
+    private AvatarJdbcRepository avatarJdbcRepository;
+
+    @Autowired
+    private AvatarPendingFileRepository avatarPendingFileRepository;
+
+    @Test
+    public void insertPendingFiles_shouldReturnIdsInOrderOfFiles() {
+        List<StoredFile> files = List.of(
+                new StoredFile("avatars/1.png", 3L, "one", "image/png"),
+                new StoredFile("avatars/2.png", 3L, null, "image/png"),
+                new StoredFile("avatars/3.png", 3L, "three", "image/png")
+        );
+
+        List<Long> ids = avatarJdbcRepository.insertPendingFiles(files, Instant.now());
+
+        assertEquals(3, ids.size());
+        for (int i = 0; i < files.size(); i++) {
+            AvatarPendingFile pendingFile = avatarPendingFileRepository.findById(ids.get(i)).orElseThrow();
+            assertEquals(files.get(i).getFilePath(), pendingFile.getFilePath());
+            assertEquals(files.get(i).getFileHash(), pendingFile.getFileHash());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.hogwarts.school.search;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NameTrieTest {
+    private static StudentDetailDTO student(long id, String name) {
+        return new StudentDetailDTO(id, name, 11, null);
+    }
+
+    private static List<Long> ids(List<StudentDetailDTO> students) {
+        return students.stream().map(StudentDetailDTO::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void search_prefixInsideEdge_shouldReturnMatchesInNameOrder() {
+        NameTrie trie = new NameTrie();
+        trie.put(student(1, "Harry"));
+        trie.put(student(2, "Hermione"));
+        trie.put(student(3, "harold"));
+        trie.put(student(4, "Hannah"));
+        trie.put(student(5, "Harry"));
+        trie.put(student(6, "Ron"));
+
+        assertEquals(List.of(4L, 3L, 1L, 5L), ids(trie.search("HA", 10)));
+        assertEquals(List.of(3L, 1L, 5L), ids(trie.search("har", 10)));
+        assertEquals(List.of(2L), ids(trie.search("herm", 10)));
+        assertEquals(List.of(4L, 3L), ids(trie.search("h", 2)));
+        assertTrue(trie.search("harz", 10).isEmpty());
+        assertTrue(trie.search("harryy", 10).isEmpty());
+        assertEquals(6, trie.size());
+    }
+
+    @Test
+    public void remove_lastStudentOfBranch_shouldKeepSiblingsReachable() {
+        NameTrie trie = new NameTrie();
+        trie.put(student(1, "Harry"));
+        trie.put(student(2, "Harold"));
+        trie.put(student(3, "Hagrid"));
+
+        assertTrue(trie.remove(student(2, "Harold")));
+        assertFalse(trie.remove(student(2, "Harold")));
+        assertFalse(trie.remove(student(9, "Harry")));
+        assertTrue(trie.remove(student(3, "Hagrid")));
+
+        assertEquals(List.of(1L), ids(trie.search("h", 10)));
+        assertEquals(List.of(1L), ids(trie.search("harry", 10)));
+        assertEquals(1, trie.size());
+
+        trie.put(student(2, "Harold"));
+        assertEquals(List.of(2L, 1L), ids(trie.search("har", 10)));
+    }
+
+    @Test
+    public void clearFaculty_shouldDetachOnlyThatFacultysStudents() {
+        NameTrie trie = new NameTrie();
+        trie.put(new StudentDetailDTO(1L, "Harry", 11, 1L));
+        trie.put(new StudentDetailDTO(2L, "Harold", 11, 2L));
+        trie.put(new StudentDetailDTO(3L, "Ron", 11, 1L));
+
+        trie.clearFaculty(1L);
+
+        assertEquals(List.of(new StudentDetailDTO(2L, "Harold", 11, 2L), new StudentDetailDTO(1L, "Harry", 11, null)),
+                trie.search("har", 10));
+        assertEquals(List.of(new StudentDetailDTO(3L, "Ron", 11, null)), trie.search("ron", 10));
+        assertTrue(trie.remove(student(1, "Harry")));
+        assertEquals(2, trie.size());
+    }
+}
@@ -0,0 +1,131 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.cache.AvatarPreviewCache;
+import ru.hogwarts.school.dto.AvatarImportResultDTO;
+import ru.hogwarts.school.dto.AvatarImportResultDTO.Status;
+import ru.hogwarts.school.repository.AvatarJdbcRepository;
+import ru.hogwarts.school.repository.AvatarPendingFileRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.storage.AvatarStorage;
+import ru.hogwarts.school.storage.StoredFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AvatarImportServiceTest {
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final AvatarJdbcRepository avatarJdbcRepository = mock(AvatarJdbcRepository.class);
+    private final AvatarStorage avatarStorage = mock(AvatarStorage.class);
+    private final AvatarPendingFileRepository avatarPendingFileRepository = mock(AvatarPendingFileRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    private final AvatarImportService importService = new AvatarImportService(studentRepository, avatarJdbcRepository,
+            avatarStorage, avatarPendingFileRepository, new AvatarPreviewCache(1024), mock(ApplicationEventPublisher.class),
+            transactionTemplate, 10, 1024);
+
+    private final StoredFile stored = new StoredFile("avatars/1-new.png", 3L, "new", "image/png");
+    private final StoredFile previous = new StoredFile("avatars/1-old.png", 3L, "old", "image/png");
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void importAvatars_brokenTail_shouldKeepImportedEntriesAndReleaseAfterCommit() throws Exception {
+        when(avatarStorage.store(eq(1L), eq("png"), isNull(), any())).thenReturn(stored);
+        when(avatarJdbcRepository.insertPendingFiles(eq(List.of(stored)), any())).thenReturn(List.of(42L));
+        when(studentRepository.findExistingIds(any())).thenReturn(List.of(1L));
+        when(avatarJdbcRepository.findFilesByStudentIds(any())).thenReturn(Map.of(1L, previous));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            Object result = invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null);
+            verify(avatarStorage, never()).release(any(), any());
+            return result;
+        });
+
+        List<AvatarImportResultDTO> results = importService.importAvatars(new ByteArrayInputStream(brokenArchive()));
+
+        assertEquals(List.of(
+                new AvatarImportResultDTO("1.png", 1L, Status.IMPORTED),
+                new AvatarImportResultDTO(null, null, Status.FAILED)
+        ), results);
+        InOrder inOrder = inOrder(avatarPendingFileRepository, avatarJdbcRepository, avatarStorage, transactionTemplate);
+        inOrder.verify(avatarStorage).store(eq(1L), eq("png"), isNull(), any());
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(avatarJdbcRepository).insertPendingFiles(eq(List.of(stored)), any());
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(avatarJdbcRepository).saveAll(Map.of(1L, stored), Set.of(1L));
+        inOrder.verify(avatarPendingFileRepository).deleteAllByIdInBatch(List.of(42L));
+        inOrder.verify(avatarStorage).release(previous.getFilePath(), previous.getFileHash());
+        verify(avatarPendingFileRepository, never()).save(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void importAvatars_linkFails_shouldReleaseFilesAndDeleteTheirJournalRowsAtOnce() throws Exception {
+        when(avatarStorage.store(eq(1L), eq("png"), isNull(), any())).thenReturn(stored);
+        when(avatarJdbcRepository.insertPendingFiles(any(), any())).thenReturn(List.of(42L));
+        when(studentRepository.findExistingIds(any())).thenReturn(List.of(1L));
+        when(avatarJdbcRepository.findFilesByStudentIds(any())).thenThrow(new IllegalStateException("database"));
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+
+        List<AvatarImportResultDTO> results = importService.importAvatars(new ByteArrayInputStream(brokenArchive()));
+
+        assertEquals(new AvatarImportResultDTO("1.png", 1L, Status.FAILED), results.get(0));
+        verify(avatarStorage).release(stored.getFilePath(), stored.getFileHash());
+        verify(avatarPendingFileRepository).deleteAllByIdInBatch(List.of(42L));
+        verify(avatarJdbcRepository, never()).saveAll(any(), any());
+    }
+
+    @Test
+    public void importAvatars_storageThrowsRuntimeException_shouldFailEntryOnly() throws Exception {
+        when(avatarStorage.store(any(), any(), any(), any())).thenThrow(new IllegalStateException("disk"));
+
+        List<AvatarImportResultDTO> results = importService.importAvatars(new ByteArrayInputStream(brokenArchive()));
+
+        assertEquals(new AvatarImportResultDTO("1.png", 1L, Status.FAILED), results.get(0));
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    /**
+     * One valid entry followed by a stored entry that claims a data descriptor, which
+     * ZipInputStream rejects with a ZipException.
+     */
+    private static byte[] brokenArchive() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int brokenHeader;
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("1.png"));
+            zip.write(new byte[]{1, 2, 3});
+            zip.closeEntry();
+            zip.flush();
+            brokenHeader = bytes.size();
+
+            byte[] data = {4, 5, 6};
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            ZipEntry stored = new ZipEntry("2.png");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(data.length);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(data);
+            zip.closeEntry();
+        }
+        byte[] archive = bytes.toByteArray();
+        archive[brokenHeader + 6] |= 8;
+        return archive;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hogwarts.school.storage.AvatarFiles;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AvatarThumbnailServiceTest {
+    private final AvatarThumbnailService thumbnailService =
+            new AvatarThumbnailService(List.of(256, 64, 128), 100_000);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void generateThumbnails_largeImage_shouldWriteSmallerVariantsOnly() throws Exception {
+        Path original = dir.resolve("1.png");
+        ImageIO.write(new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB), "png", original.toFile());
+
+        thumbnailService.generateThumbnails(original, "image/png", AvatarFiles.read(original, 0, Files.size(original)));
+
+        BufferedImage small = ImageIO.read(dir.resolve("1_64.png").toFile());
+        assertEquals(64, small.getWidth());
+        assertEquals(32, small.getHeight());
+        assertTrue(Files.exists(dir.resolve("1_128.png")));
+        assertFalse(Files.exists(dir.resolve("1_256.png")));
+        assertTrue(thumbnailService.hasVariant(original, "image/png", 128));
+        assertFalse(thumbnailService.hasVariant(original, "image/png", 256));
+    }
+
+    @Test
+    public void generateThumbnails_tooManyPixels_shouldSkipDecoding() throws Exception {
+        Path original = dir.resolve("2.png");
+        ImageIO.write(new BufferedImage(1000, 101, BufferedImage.TYPE_INT_ARGB), "png", original.toFile());
+
+        thumbnailService.generateThumbnails(original, "image/png", AvatarFiles.read(original, 0, Files.size(original)));
+
+        assertFalse(Files.exists(dir.resolve("2_64.png")));
+    }
+
+    @Test
+    public void normalizeSize_shouldPickSmallestVariantThatFits() {
+        assertEquals(64, thumbnailService.normalizeSize(10));
+        assertEquals(128, thumbnailService.normalizeSize(65));
+        assertEquals(256, thumbnailService.normalizeSize(256));
+        assertNull(thumbnailService.normalizeSize(257));
+        assertNull(thumbnailService.normalizeSize(null));
+    }
+}
@@ -0,0 +1,112 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import ru.hogwarts.school.cache.FacultyStudentsCache;
+import ru.hogwarts.school.dto.FacultyCreateDTO;
+import ru.hogwarts.school.dto.FacultyDetailDTO;
+import ru.hogwarts.school.dto.StudentCreateDTO;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.dto.mapper.FacultyDTOMapper;
+import ru.hogwarts.school.dto.mapper.StudentDTOMapper;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.search.StudentNameIndex;
+import ru.hogwarts.school.statistics.StudentStatistics;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Membership changes must issue a fixed number of statements however many students move,
+ * and must never load the members of a faculty.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import({FacultyService.class, StudentService.class, StudentDTOMapper.class, FacultyDTOMapper.class, StudentStatistics.class, StudentNameIndex.class, FacultyStudentsCache.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+public class FacultyMembershipStatementCountTest extends StatementCountTestSupport {
+    private static final int STUDENTS_PER_FACULTY = 40;
+
+    @Autowired
+    private FacultyService facultyService;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    private final Set<Long> staying = new HashSet<>();
+    private final Set<Long> freshmen = new HashSet<>();
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < STUDENTS_PER_FACULTY; i++) {
+            Student student = persistStudent("Student " + i, 11 + i % 7, gryffindor);
+            if (i % 2 == 0) {
+                staying.add(student.getId());
+            }
+            freshmen.add(persistStudent("Freshman " + i, 11, null).getId());
+        }
+    }
+
+    @Test
+    public void updateFaculty_shouldMoveOnlyChangedStudentsInFixedNumberOfStatements() {
+        Set<Long> members = new HashSet<>(staying);
+        members.addAll(freshmen);
+
+        // faculty, current members, joining students, faculty row, leaving update, joining update
+        FacultyDetailDTO updated = count(6, () -> facultyService.updateFaculty(gryffindor.getId(), new FacultyCreateDTO("Gryffindor", "gold", members)));
+
+        assertEquals(members, updated.getStudents());
+        List<Student> stored = studentRepository.findByFacultyIdAndIdGreaterThanOrderById(gryffindor.getId(), 0L, null);
+        assertEquals(members.size(), stored.size());
+    }
+
+    @Test
+    public void createFaculty_shouldMoveStudentsInFixedNumberOfStatements() {
+        // joining students, faculty row, joining update
+        FacultyDetailDTO created = count(3, () -> facultyService.createFaculty(new FacultyCreateDTO("Hufflepuff", "yellow", staying)));
+
+        assertEquals(staying, created.getStudents());
+        assertEquals(STUDENTS_PER_FACULTY - staying.size(),
+                studentRepository.findByFacultyIdAndIdGreaterThanOrderById(gryffindor.getId(), 0L, null).size());
+    }
+
+    @Test
+    public void removeFaculty_shouldDetachMembersInFixedNumberOfStatements() {
+        // faculty, detach update, faculty delete
+        FacultyDetailDTO removed = count(3, () -> facultyService.removeFaculty(gryffindor.getId()));
+
+        assertEquals(0, removed.getStudents().size());
+        assertEquals(0, statistics.getCollectionLoadCount(), "collection loads");
+        assertEquals(0, studentRepository.findByFacultyIdAndIdGreaterThanOrderById(gryffindor.getId(), 0L, null).size());
+        assertEquals(2 * STUDENTS_PER_FACULTY, studentRepository.count());
+    }
+
+    @Test
+    public void studentMembershipChanges_shouldNotLoadFacultyMembers() {
+        Long memberId = staying.iterator().next();
+        resetCounters();
+
+        StudentDetailDTO created = studentService.createStudent(new StudentCreateDTO("Neville", 11, gryffindor.getId()));
+        studentService.updateStudent(memberId, new StudentCreateDTO("Student", 12, null));
+        studentService.removeStudent(created.getId());
+        entityManager.flush();
+
+        assertEquals(0, statistics.getCollectionLoadCount(), "collection loads");
+        assertEquals(STUDENTS_PER_FACULTY - 1,
+                studentRepository.findByFacultyIdAndIdGreaterThanOrderById(gryffindor.getId(), 0L, null).size());
+    }
+}
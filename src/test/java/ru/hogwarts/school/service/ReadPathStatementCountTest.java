@@ -0,0 +1,78 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import ru.hogwarts.school.cache.FacultyStudentsCache;
+import ru.hogwarts.school.dto.mapper.FacultyDTOMapper;
+import ru.hogwarts.school.dto.mapper.StudentDTOMapper;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.search.StudentNameIndex;
+import ru.hogwarts.school.statistics.StudentStatistics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read paths must issue a fixed number of statements however many rows they return.
+ * Both caches are emptied before each call, so the counts are for a cold cache.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import({StudentService.class, FacultyService.class, StudentDTOMapper.class, FacultyDTOMapper.class, StudentStatistics.class, StudentNameIndex.class, FacultyStudentsCache.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+public class ReadPathStatementCountTest extends StatementCountTestSupport {
+    private static final int STUDENTS_PER_FACULTY = 30;
+    private static final int ALL_STUDENTS = 2 * STUDENTS_PER_FACULTY;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private FacultyService facultyService;
+
+    private Student harry;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < STUDENTS_PER_FACULTY; i++) {
+            Student student = persistStudent("Student " + i, 11 + i % 7, i % 2 == 0 ? gryffindor : slytherin);
+            Avatar avatar = new Avatar(null, "avatars/" + i + ".png", 3L, "image/png", null);
+            avatar.setStudent(student);
+            entityManager.persist(avatar);
+            if (i == 0) {
+                harry = student;
+            }
+        }
+        for (int i = 0; i < STUDENTS_PER_FACULTY; i++) {
+            persistStudent("Freshman " + i, 11, null);
+        }
+    }
+
+    @Test
+    public void studentReadPaths_shouldIssueFixedNumberOfStatements() {
+        assertEquals(ALL_STUDENTS, count(1, () -> studentService.getAllStudents(null, ALL_STUDENTS)).getItems().size());
+        assertEquals(gryffindor.getId(), count(1, () -> studentService.getStudentById(harry.getId())).getFaculty());
+        count(1, () -> studentService.getStudentsByAge(11, null, 500));
+        count(1, () -> studentService.getStudentsBetweenAge(11, 20, null, 500));
+        count(1, () -> studentService.getLastStudents());
+        assertEquals(STUDENTS_PER_FACULTY / 2, count(3, () -> studentService.getStudentFacultyById(harry.getId())).getStudents().size());
+        assertEquals(0, statistics.getCollectionLoadCount(), "faculty members are read by id");
+    }
+
+    @Test
+    public void facultyReadPaths_shouldIssueFixedNumberOfStatements() {
+        assertEquals(STUDENTS_PER_FACULTY / 2, count(2, () -> facultyService.getFacultyById(gryffindor.getId())).getStudents().size());
+        assertEquals(0, statistics.getCollectionLoadCount(), "faculty members are read by id");
+        assertEquals(2, count(1, () -> facultyService.getAllFaculties(null, null)).getItems().size());
+        count(1, () -> facultyService.getFacultiesByColor("RED", null, null));
+        count(1, () -> facultyService.getFacultiesByName("gryffindor", null, null));
+        assertEquals(STUDENTS_PER_FACULTY / 2, count(2, () -> facultyService.getFacultyStudentsById(gryffindor.getId(), null, null)).getItems().size());
+    }
+}
@@ -0,0 +1,61 @@
+package ru.hogwarts.school.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Base of the {@code @DataJpaTest}s that count the statements a service call issues
+ * through Hibernate statistics.
+ */
+abstract class StatementCountTestSupport {
+    @Autowired
+    protected TestEntityManager entityManager;
+
+    protected Statistics statistics;
+    protected Faculty gryffindor;
+    protected Faculty slytherin;
+
+    @BeforeEach
+    public void setUpFaculties() {
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        gryffindor = entityManager.persist(new Faculty(null, "Gryffindor", "red"));
+        // the id generator fetches its first pool on the second faculty, not inside a counted call
+        slytherin = entityManager.persist(new Faculty(null, "Slytherin", "green"));
+    }
+
+    protected Student persistStudent(String name, int age, Faculty faculty) {
+        Student student = new Student(null, name, age);
+        student.setFaculty(faculty);
+        return entityManager.persist(student);
+    }
+
+    /**
+     * Flushes the fixture and starts counting with an empty persistence context and second-level cache.
+     */
+    protected void resetCounters() {
+        entityManager.flush();
+        entityManager.clear();
+        entityManager.getEntityManager().getEntityManagerFactory().getCache().evictAll();
+        statistics.clear();
+    }
+
+    /**
+     * Runs {@code call} on a cold cache and checks the statements it issued, including those of the final flush.
+     */
+    protected <T> T count(long expected, Supplier<T> call) {
+        resetCounters();
+        T result = call.get();
+        entityManager.flush();
+        assertEquals(expected, statistics.getPrepareStatementCount(), "statements");
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import ru.hogwarts.school.cache.FacultyStudentsCache;
+import ru.hogwarts.school.dto.StudentBulkResultDTO;
+import ru.hogwarts.school.dto.StudentBulkResultDTO.Status;
+import ru.hogwarts.school.dto.StudentCreateDTO;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.dto.mapper.StudentDTOMapper;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Bulk writes must report a status per item and write each chunk of
+ * {@code students.bulk.flush-size} items as one JDBC batch.
+ */
+@DataJpaTest(properties = {
+        "spring.liquibase.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "students.bulk.flush-size=2"
+})
+@Import({StudentBulkService.class, StudentDTOMapper.class, FacultyStudentsCache.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+public class StudentBulkStatementCountTest extends StatementCountTestSupport {
+    @Autowired
+    private StudentBulkService studentBulkService;
+
+    @SpyBean
+    private FacultyRepository facultyRepository;
+
+    private final List<Long> students = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < 4; i++) {
+            students.add(persistStudent("Student " + i, 11, null).getId());
+        }
+    }
+
+    @Test
+    public void createStudents_shouldReportEveryItemAndInsertPerChunk() {
+        List<StudentCreateDTO> inputs = Arrays.asList(
+                new StudentCreateDTO("Harry", 11, gryffindor.getId()),
+                null,
+                new StudentCreateDTO("Ron", 11, gryffindor.getId()),
+                new StudentCreateDTO("Nobody", 11, -1L),
+                new StudentCreateDTO("Hermione", 11, null),
+                new StudentCreateDTO("Neville", 11, gryffindor.getId()),
+                new StudentCreateDTO("Luna", 11, null)
+        );
+
+        // faculties, then one insert batch per chunk of two; ids come from the pool fetched in setUp
+        List<StudentBulkResultDTO> results = count(4, () -> studentBulkService.createStudents(inputs));
+
+        assertEquals(List.of(Status.CREATED, Status.INVALID, Status.CREATED, Status.FACULTY_NOT_FOUND, Status.CREATED, Status.CREATED, Status.CREATED),
+                results.stream().map(StudentBulkResultDTO::getStatus).collect(Collectors.toList()));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6), results.stream().map(StudentBulkResultDTO::getIndex).collect(Collectors.toList()));
+        StudentDetailDTO harry = results.get(0).getStudent();
+        assertNotNull(harry.getId());
+        assertEquals(new StudentDetailDTO(harry.getId(), "Harry", 11, gryffindor.getId()), harry);
+        assertNull(results.get(1).getStudent());
+        assertNull(results.get(3).getStudent());
+        verify(facultyRepository, times(1)).findAllById(any());
+        assertEquals(5, statistics.getEntityInsertCount(), "inserted rows");
+        assertEquals(gryffindor.getId(), entityManager.find(Student.class, results.get(5).getStudent().getId()).getFaculty().getId());
+    }
+
+    @Test
+    public void updateStudents_shouldReportEveryItemAndFlushPerChunk() {
+        List<StudentDetailDTO> inputs = Arrays.asList(
+                new StudentDetailDTO(students.get(0), "Harry", 12, gryffindor.getId()),
+                null,
+                new StudentDetailDTO(-1L, "Nobody", 12, null),
+                new StudentDetailDTO(students.get(1), "Ron", 12, -1L),
+                new StudentDetailDTO(students.get(2), "Hermione", 12, gryffindor.getId()),
+                new StudentDetailDTO(students.get(3), "Neville", 12, null)
+        );
+
+        // faculties, then per chunk of two: students, and an update batch when anything changed
+        List<StudentBulkResultDTO> results = count(6, () -> studentBulkService.updateStudents(inputs));
+
+        assertEquals(List.of(Status.UPDATED, Status.INVALID, Status.STUDENT_NOT_FOUND, Status.FACULTY_NOT_FOUND, Status.UPDATED, Status.UPDATED),
+                results.stream().map(StudentBulkResultDTO::getStatus).collect(Collectors.toList()));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), results.stream().map(StudentBulkResultDTO::getIndex).collect(Collectors.toList()));
+        assertEquals(new StudentDetailDTO(students.get(0), "Harry", 12, gryffindor.getId()), results.get(0).getStudent());
+        assertEquals(3, statistics.getEntityUpdateCount(), "updated rows");
+        assertEquals("Student 1", entityManager.find(Student.class, students.get(1)).getName());
+    }
+}
@@ -0,0 +1,114 @@
+package ru.hogwarts.school.statistics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import ru.hogwarts.school.dto.FacultyNotDetailDTO;
+import ru.hogwarts.school.dto.StudentDetailDTO;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.repository.projection.AgeCount;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class StudentStatisticsTest {
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final SpelAwareProxyProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    private AgeCount ageCount(Long faculty, Integer age, long students) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("faculty", faculty);
+        row.put("age", age);
+        row.put("students", students);
+        return projectionFactory.createProjection(AgeCount.class, row);
+    }
+
+    private AgeCount ageCount(Integer age, long students) {
+        return ageCount(null, age, students);
+    }
+
+    @Test
+    public void onStudentChanged_afterLoad_shouldUpdateWithoutQuerying() {
+        when(studentRepository.countByFacultyAndAge()).thenReturn(List.of(ageCount(11, 2), ageCount(17, 1)));
+        StudentStatistics statistics = new StudentStatistics(studentRepository, 3);
+        assertEquals(3, statistics.getSnapshot().getStudents());
+        assertEquals(13.0, statistics.getSnapshot().getAvgAge());
+
+        statistics.onStudentChanged(new StudentChangedEvent(null, new StudentDetailDTO(4L, "four", 19, null)));
+        statistics.onStudentChanged(new StudentChangedEvent(
+                new StudentDetailDTO(3L, "three", 17, null), new StudentDetailDTO(3L, "three", 12, 1L)));
+        statistics.onStudentChanged(new StudentChangedEvent(new StudentDetailDTO(1L, "one", 11, null), null));
+
+        StudentStatistics.Snapshot snapshot = statistics.getSnapshot();
+        assertEquals(3, snapshot.getStudents());
+        assertEquals(14.0, snapshot.getAvgAge());
+        assertEquals(11, snapshot.getOverall().getMinAge());
+        assertEquals(19, snapshot.getOverall().getMaxAge());
+        verify(studentRepository, times(1)).countByFacultyAndAge();
+    }
+
+    @Test
+    public void reconcile_writeDuringScan_shouldRetryScan() {
+        StudentStatistics statistics = new StudentStatistics(studentRepository, 3);
+        when(studentRepository.countByFacultyAndAge())
+                .thenReturn(List.of(ageCount(20, 1)))
+                .thenAnswer(invocation -> {
+                    statistics.onStudentChanged(new StudentChangedEvent(null, new StudentDetailDTO(2L, "two", 30, null)));
+                    return List.of(ageCount(20, 1));
+                })
+                .thenReturn(List.of(ageCount(20, 1), ageCount(30, 1)));
+        assertEquals(1, statistics.getSnapshot().getStudents());
+
+        statistics.reconcile();
+
+        assertEquals(2, statistics.getSnapshot().getStudents());
+        assertEquals(25.0, statistics.getSnapshot().getAvgAge());
+        verify(studentRepository, times(3)).countByFacultyAndAge();
+    }
+
+    @Test
+    public void getSnapshot_facultyHistograms_shouldMergeAndFollowMoves() {
+        when(studentRepository.countByFacultyAndAge()).thenReturn(List.of(
+                ageCount(1L, 11, 9), ageCount(1L, 12, 1), ageCount(2L, 15, 5), ageCount(2L, null, 2)));
+        StudentStatistics statistics = new StudentStatistics(studentRepository, 3);
+
+        AgeHistogram overall = statistics.getSnapshot().getOverall();
+        assertEquals(17, overall.getStudents());
+        assertEquals(11, overall.getPercentile(0.5));
+        assertEquals(15, overall.getPercentile(0.9));
+        assertEquals(Map.of(10, 10L, 15, 5L), overall.getBuckets(5));
+
+        statistics.onStudentChanged(new StudentChangedEvent(
+                new StudentDetailDTO(5L, "five", 12, 1L), new StudentDetailDTO(5L, "five", 12, 2L)));
+
+        StudentStatistics.Snapshot snapshot = statistics.getSnapshot();
+        assertEquals(9, snapshot.getFaculty(1L).getStudents());
+        assertEquals(11, snapshot.getFaculty(1L).getPercentile(0.99));
+        assertEquals(8, snapshot.getFaculty(2L).getStudents());
+        assertEquals(12, snapshot.getFaculty(2L).getMinAge());
+        assertEquals(17, snapshot.getStudents());
+    }
+
+    @Test
+    public void onFacultyChanged_removedFaculty_shouldMoveMembersToNoFaculty() {
+        when(studentRepository.countByFacultyAndAge()).thenReturn(List.of(
+                ageCount(1L, 11, 3), ageCount(2L, 15, 5), ageCount(null, 12, 1)));
+        StudentStatistics statistics = new StudentStatistics(studentRepository, 3);
+        assertEquals(9, statistics.getSnapshot().getStudents());
+
+        statistics.onFacultyChanged(new FacultyChangedEvent(new FacultyNotDetailDTO(1L, "one", "red"), null));
+
+        StudentStatistics.Snapshot snapshot = statistics.getSnapshot();
+        assertFalse(snapshot.hasFaculty(1L));
+        assertEquals(4, snapshot.getFaculty(null).getStudents());
+        assertEquals(11, snapshot.getFaculty(null).getMinAge());
+        assertEquals(5, snapshot.getFaculty(2L).getStudents());
+        assertEquals(9, snapshot.getStudents());
+        verify(studentRepository, times(1)).countByFacultyAndAge();
+    }
+}
@@ -0,0 +1,113 @@
+package ru.hogwarts.school.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.scheduling.TaskScheduler;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.projection.AvatarMetadata;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class AvatarReconcilerTest {
+    private final AvatarRepository avatarRepository = mock(AvatarRepository.class);
+    private final TaskScheduler taskScheduler = mock(TaskScheduler.class);
+
+    @TempDir
+    Path dir;
+
+    private Path oldFile(String name) throws Exception {
+        Path file = Files.write(dir.resolve(name), new byte[]{1, 2, 3});
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 10_000));
+        return file;
+    }
+
+    @Test
+    public void reconcile_unreferencedFiles_shouldDeleteOldOrphansOnly() throws Exception {
+        Path referenced = oldFile("1.png");
+        Path orphan = oldFile("2.png");
+        Path orphanThumbnail = oldFile("2_64.png");
+        Path fresh = Files.write(dir.resolve("3.png"), new byte[]{1});
+        when(avatarRepository.findReferencedFilePaths(anyCollection())).thenReturn(Set.of(referenced.toString()));
+        when(avatarRepository.findByIdGreaterThanOrderById(anyLong(), any())).thenReturn(List.of());
+
+        AvatarReconciler reconciler = new AvatarReconciler(avatarRepository, new AvatarThumbnailService(List.of(64), 25_000_000),
+                taskScheduler, dir.toString(), 10, 2, 0, 5_000);
+        reconciler.reconcile();
+
+        assertTrue(Files.exists(referenced));
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(orphanThumbnail));
+        assertTrue(Files.exists(fresh));
+    }
+
+    @Test
+    public void reconcile_segmentFiles_shouldBeLeftToCompactor() throws Exception {
+        Files.createDirectories(dir.resolve("segments"));
+        Path segment = oldFile("segments/segment-000001.dat");
+        when(avatarRepository.findReferencedFilePaths(anyCollection())).thenReturn(Set.of());
+        when(avatarRepository.findByIdGreaterThanOrderById(anyLong(), any())).thenReturn(List.of());
+
+        AvatarReconciler reconciler = new AvatarReconciler(avatarRepository, new AvatarThumbnailService(List.of(64), 25_000_000),
+                taskScheduler, dir.toString(), 10, 2, 0, 5_000);
+        reconciler.reconcile();
+
+        assertTrue(Files.exists(segment));
+        verify(avatarRepository, never()).findReferencedFilePaths(anyCollection());
+    }
+
+    @Test
+    public void reconcile_rowWithoutFile_shouldFlagRow() throws Exception {
+        Avatar avatar = new Avatar(7L, dir.resolve("7.png").toString(), 3L, "image/png", null);
+        AvatarMetadata row = new SpelAwareProxyProjectionFactory().createProjection(AvatarMetadata.class, avatar);
+        when(avatarRepository.findByIdGreaterThanOrderById(eq(0L), any())).thenReturn(List.of(row));
+
+        AvatarReconciler reconciler = new AvatarReconciler(avatarRepository, new AvatarThumbnailService(List.of(64), 25_000_000),
+                taskScheduler, dir.toString(), 10, 2, 0, 5_000);
+        reconciler.reconcile();
+
+        verify(avatarRepository).updateFileMissing(List.of(7L), true);
+    }
+
+    @Test
+    public void reconcile_shouldScheduleNextBatchAndResumeAfterRestart() throws Exception {
+        Files.createDirectories(dir.resolve("ab"));
+        Files.createDirectories(dir.resolve("cd"));
+        Path first = oldFile("ab/1.png");
+        Path second = oldFile("ab/2.png");
+        Path third = oldFile("cd/3.png");
+        when(avatarRepository.findReferencedFilePaths(anyCollection())).thenReturn(Set.of(first.toString()));
+        when(avatarRepository.findByIdGreaterThanOrderById(anyLong(), any())).thenReturn(List.of());
+
+        AvatarReconciler reconciler = new AvatarReconciler(avatarRepository, new AvatarThumbnailService(List.of(64), 25_000_000),
+                taskScheduler, dir.toString(), 1, 2, 50, 5_000);
+        reconciler.reconcile();
+
+        assertTrue(Files.exists(second));
+        ArgumentCaptor<Runnable> nextBatch = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).schedule(nextBatch.capture(), any(Instant.class));
+        nextBatch.getValue().run();
+        assertFalse(Files.exists(second));
+        assertTrue(Files.exists(third));
+        verifyNoMoreInteractions(taskScheduler);
+
+        AvatarReconciler restarted = new AvatarReconciler(avatarRepository, new AvatarThumbnailService(List.of(64), 25_000_000),
+                taskScheduler, dir.toString(), 1, 2, 50, 5_000);
+        restarted.reconcile();
+        assertFalse(Files.exists(third));
+        assertTrue(Files.exists(first));
+        verify(avatarRepository, times(1)).findReferencedFilePaths(List.of(first.toString()));
+    }
+}
@@ -0,0 +1,36 @@
+package ru.hogwarts.school.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class FlatAvatarStorageTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void store_shouldJournalTargetBeforeWritingIt() throws Exception {
+        FlatAvatarStorage storage = new FlatAvatarStorage(mock(AvatarRepository.class), new AvatarThumbnailService(List.of(64), 25_000_000));
+        ReflectionTestUtils.setField(storage, "avatarsDirPath", dir.toString());
+        List<StoredFile> journaled = new ArrayList<>();
+
+        StoredFile stored = storage.store(1L, "png", "image/png", new ByteArrayInputStream(new byte[]{1, 2, 3}), target -> {
+            assertFalse(Files.exists(Path.of(target.getFilePath())));
+            journaled.add(target);
+        });
+
+        assertEquals(List.of(stored), journaled);
+        assertTrue(Files.exists(Path.of(stored.getFilePath())));
+    }
+}
@@ -0,0 +1,41 @@
+package ru.hogwarts.school.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarThumbnailService;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SegmentAvatarStorageTest {
+    private final AvatarRepository avatarRepository = mock(AvatarRepository.class);
+    private final AvatarThumbnailService avatarThumbnailService = new AvatarThumbnailService(List.of(64), 25_000_000);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void release_lastAvatarWithHash_shouldDeleteThumbnails() throws Exception {
+        SegmentAvatarStorage storage = new SegmentAvatarStorage(avatarRepository, avatarThumbnailService, dir.toString(), 1024, 0.5);
+        StoredFile stored = storage.store(1L, "png", "image/png", new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        Path thumbnail = avatarThumbnailService.getVariantPath(
+                storage.getThumbnailBase(stored.getFilePath(), stored.getFileHash()), "image/png", 64);
+        Files.createDirectories(thumbnail.getParent());
+        Files.write(thumbnail, new byte[]{1});
+
+        when(avatarRepository.existsByFileHash(stored.getFileHash())).thenReturn(true);
+        storage.release(stored.getFilePath(), stored.getFileHash());
+        assertTrue(Files.exists(thumbnail));
+
+        when(avatarRepository.existsByFileHash(stored.getFileHash())).thenReturn(false);
+        storage.release(stored.getFilePath(), stored.getFileHash());
+        assertFalse(Files.exists(thumbnail));
+        storage.close();
+    }
+}